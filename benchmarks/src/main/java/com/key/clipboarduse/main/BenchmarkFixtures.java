@@ -0,0 +1,71 @@
+package com.key.clipboarduse.main;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Shared setup for the benchmarks: an in-memory configuration without persistence or event log,
+ * and reproducible clipboard texts of a given size.
+ */
+final class BenchmarkFixtures {
+    private static final String WORDS = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod "
+        + "tempor incididunt ut labore et dolore magna aliqua 0123456789 {}();=<>\n";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Creates a configuration that keeps history in memory only, with room for the given
+     * number of entries and a byte budget that never triggers before the capacity does.
+     */
+    static ClipboardConfig config(int historySize) {
+        Properties properties = new Properties();
+        properties.setProperty(ClipboardConfig.HISTORY_CAPACITY, Integer.toString(historySize));
+        properties.setProperty(ClipboardConfig.HISTORY_PERSIST, "false");
+        properties.setProperty(ClipboardConfig.HISTORY_BYTE_BUDGET, Long.toString(Long.MAX_VALUE));
+        properties.setProperty(ClipboardConfig.MONITOR_POLL_INTERVAL, "0");
+        properties.setProperty(ClipboardConfig.EVENT_LOG_ENABLED, "false");
+        return new ClipboardConfig(properties);
+    }
+
+    /**
+     * Creates distinct texts of the given length. Each text starts with its number, so
+     * no two texts share a content hash, and the rest is word-like filler that compresses
+     * about as well as source code or prose.
+     */
+    static String[] texts(int count, int length) {
+        SplittableRandom random = new SplittableRandom(count * 31L + length);
+        String[] texts = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder builder = new StringBuilder(length + 16).append(i).append(' ');
+            while (builder.length() < length) {
+                int start = random.nextInt(WORDS.length() - 8);
+                builder.append(WORDS, start, start + 1 + random.nextInt(7));
+            }
+            builder.setLength(Math.max(length, Integer.toString(i).length() + 2));
+            builder.setCharAt(builder.length() - 1, '.');
+            texts[i] = builder.toString();
+        }
+        return texts;
+    }
+
+    /**
+     * Wraps texts as clipboard contents ahead of time, so benchmarks do not measure the wrapping.
+     */
+    static StringSelection[] selections(String[] texts) {
+        StringSelection[] selections = new StringSelection[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            selections[i] = new StringSelection(texts[i]);
+        }
+        return selections;
+    }
+
+    /**
+     * Creates an in-memory clipboard that works on headless machines.
+     */
+    static Clipboard clipboard() {
+        return new Clipboard("benchmark");
+    }
+}
@@ -0,0 +1,101 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link ClipboardManager} hot paths on a full history held in memory.
+ * <ul>
+ *   <li>{@code captureNew}: content not in history; stores it and evicts the oldest entry</li>
+ *   <li>{@code captureRepeat}: the newest entry copied again; the duplicate check rejects it</li>
+ *   <li>{@code captureMoveToFront}: an older entry copied again; it moves to the front</li>
+ *   <li>{@code getHistoryItem}: reads a random entry as Win+Shift cycling does</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class ClipboardManagerBenchmark {
+
+    @Param({"100", "10000"})
+    public int historySize;
+
+    @Param({"64", "4096", "65536"})
+    public int entrySize;
+
+    private Clipboard clipboard;
+    private ClipboardManager manager;
+    private StringSelection[] selections;
+    private StringSelection newest;
+    private SplittableRandom random;
+    private int next;
+    private int oldest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        clipboard = BenchmarkFixtures.clipboard();
+        manager = new ClipboardManager(clipboard, BenchmarkFixtures.config(historySize));
+        // One more text than history holds: cycling through them always copies something new
+        selections = BenchmarkFixtures.selections(BenchmarkFixtures.texts(historySize + 1, entrySize));
+        for (int i = 0; i < historySize; i++) {
+            clipboard.setContents(selections[i], null);
+            manager.captureClipboard();
+        }
+        newest = selections[historySize - 1];
+        next = historySize;
+        oldest = 0;
+        random = new SplittableRandom(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public boolean captureNew() {
+        StringSelection selection = selections[next];
+        next = next == selections.length - 1 ? 0 : next + 1;
+        clipboard.setContents(selection, null);
+        return manager.captureClipboard();
+    }
+
+    @Benchmark
+    public boolean captureRepeat() {
+        clipboard.setContents(newest, null);
+        return manager.captureClipboard();
+    }
+
+    @Benchmark
+    public boolean captureMoveToFront() {
+        // Always re-copy the oldest entry, which then becomes the newest
+        StringSelection selection = selections[oldest];
+        oldest = oldest == historySize - 1 ? 0 : oldest + 1;
+        clipboard.setContents(selection, null);
+        return manager.captureClipboard();
+    }
+
+    @Benchmark
+    public String getHistoryItem() {
+        return manager.getHistoryItem(1 + random.nextInt(historySize));
+    }
+}
@@ -0,0 +1,129 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one fallback poll while the clipboard holds content that is already in history:
+ * 1M characters of text, or a 1920x1080 image. Like the system clipboard, the clipboard hands
+ * out a fresh copy of its content on every read. With {@code changeCheck=false} the poll is
+ * captured like any other signal, so the content is normalized, hashed and found to be a
+ * duplicate; with {@code changeCheck=true} it is compared with the last read and skipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ClipboardPollBenchmark {
+    private static final int TEXT_SIZE = 1024 * 1024;
+
+    @Param({"text", "image"})
+    public String content;
+
+    @Param({"false", "true"})
+    public boolean changeCheck;
+
+    private ClipboardManager manager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Clipboard clipboard = BenchmarkFixtures.clipboard();
+        manager = new ClipboardManager(clipboard, BenchmarkFixtures.config(16));
+        clipboard.setContents("text".equals(content)
+            ? new CopyingSelection(BenchmarkFixtures.texts(1, TEXT_SIZE)[0].toCharArray())
+            : new CopyingSelection(screenshot(1920, 1080)), null);
+        manager.captureClipboard();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public boolean poll() {
+        CompletableFuture<Boolean> stored = new CompletableFuture<>();
+        if (!manager.submitCapture(stored::complete, changeCheck)) {
+            return false;
+        }
+        return stored.join();
+    }
+
+    private static BufferedImage screenshot(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(30, 60, 200), width, height, new Color(240, 220, 90)));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Offers text or an image, copying it on every read as a platform clipboard does.
+     */
+    private static final class CopyingSelection implements Transferable {
+        private final char[] text;
+        private final BufferedImage image;
+
+        CopyingSelection(char[] text) {
+            this.text = text;
+            this.image = null;
+        }
+
+        CopyingSelection(BufferedImage image) {
+            this.text = null;
+            this.image = image;
+        }
+
+        private DataFlavor flavor() {
+            return text != null ? DataFlavor.stringFlavor : DataFlavor.imageFlavor;
+        }
+
+        @Override
+        public DataFlavor[] getTransferDataFlavors() {
+            return new DataFlavor[] {flavor()};
+        }
+
+        @Override
+        public boolean isDataFlavorSupported(DataFlavor flavor) {
+            return flavor().equals(flavor);
+        }
+
+        @Override
+        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+            if (!isDataFlavorSupported(flavor)) {
+                throw new UnsupportedFlavorException(flavor);
+            }
+            if (text != null) {
+                return new String(text);
+            }
+            BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+            image.copyData(copy.getRaster());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stress test for concurrent history access: several readers look up history items while
+ * one writer keeps capturing new content, as when the user cycles through history during
+ * a burst of copies.
+ * <p>
+ * The {@code optimistic} group uses {@link ClipboardManager} as it is. The {@code synchronized}
+ * group wraps the same calls in one monitor, which is how history access was serialized
+ * before, so the difference between the groups is the cost of readers contending with
+ * each other and with the writer.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ConcurrentHistoryBenchmark {
+
+    @Param({"10000"})
+    public int historySize;
+
+    @Param({"256"})
+    public int entrySize;
+
+    private Clipboard clipboard;
+    private ClipboardManager manager;
+    private StringSelection[] selections;
+    private int next;
+    private final Object monitor = new Object();
+
+    @State(Scope.Thread)
+    public static class ReaderState {
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            random = new SplittableRandom(Thread.currentThread().getId());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        clipboard = BenchmarkFixtures.clipboard();
+        manager = new ClipboardManager(clipboard, BenchmarkFixtures.config(historySize));
+        selections = BenchmarkFixtures.selections(BenchmarkFixtures.texts(historySize + 1, entrySize));
+        for (int i = 0; i < historySize; i++) {
+            clipboard.setContents(selections[i], null);
+            manager.captureClipboard();
+        }
+        next = historySize;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    @Group("optimistic")
+    @GroupThreads(3)
+    public HistoryEntry optimisticRead(ReaderState reader) {
+        return manager.getHistoryEntry(1 + reader.random.nextInt(historySize));
+    }
+
+    @Benchmark
+    @Group("optimistic")
+    @GroupThreads(1)
+    public boolean optimisticWrite() {
+        return captureNext();
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(3)
+    public HistoryEntry synchronizedRead(ReaderState reader) {
+        synchronized (monitor) {
+            return manager.getHistoryEntry(1 + reader.random.nextInt(historySize));
+        }
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(1)
+    public boolean synchronizedWrite() {
+        synchronized (monitor) {
+            return captureNext();
+        }
+    }
+
+    private boolean captureNext() {
+        StringSelection selection = selections[next];
+        next = next == selections.length - 1 ? 0 : next + 1;
+        clipboard.setContents(selection, null);
+        return manager.captureClipboard();
+    }
+}
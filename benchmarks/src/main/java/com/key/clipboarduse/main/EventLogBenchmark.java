@@ -0,0 +1,82 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording one event to the {@link EventLog} on the calling thread, while its writer
+ * thread drains the buffer to a temporary file. Recording as fast as possible outruns the
+ * writer, so many events are dropped; the {@code recorded} and {@code dropped} counters show
+ * how the calls split between the two paths. Run with {@code -prof gc} to confirm that
+ * recording does not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventLogBenchmark {
+
+    @Param({"4096", "1048576"})
+    public int bufferSize;
+
+    private Path file;
+    private EventLog eventLog;
+    private long position;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcome {
+        public long recorded;
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            recorded = 0;
+            dropped = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("event-log-benchmark", ".log");
+        eventLog = new EventLog(file, bufferSize, 16L * 1024 * 1024);
+        eventLog.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        eventLog.close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".1"));
+    }
+
+    @Benchmark
+    public boolean record(Outcome outcome) {
+        boolean recorded = eventLog.record(EventLog.Event.HISTORY_SHOWN, ++position & 63, 64);
+        if (recorded) {
+            outcome.recorded++;
+        } else {
+            outcome.dropped++;
+        }
+        return recorded;
+    }
+}
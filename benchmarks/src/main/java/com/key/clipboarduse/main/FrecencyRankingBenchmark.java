@@ -0,0 +1,65 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of keeping history in frecency order: recording a use of a random entry (a copy or a
+ * pick from history), and looking up the entry shown after a few Win+Shift presses.
+ * Uses are recorded on a simulated clock advancing one minute per use with a one-hour
+ * half-life, so keys keep changing the order as they would over a long session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrecencyRankingBenchmark {
+
+    @Param({"100", "100000"})
+    public int historySize;
+
+    @Param({"5"})
+    public int cyclePosition;
+
+    private HistoryEntry[] entries;
+    private FrecencyRanking ranking;
+    private SplittableRandom random;
+    private long clock;
+
+    @Setup
+    public void setUp() {
+        random = new SplittableRandom(42);
+        ranking = new FrecencyRanking(TimeUnit.HOURS.toNanos(1), () -> clock);
+        entries = new HistoryEntry[historySize];
+        for (int i = 0; i < historySize; i++) {
+            entries[i] = HistoryEntry.plain(i + 1, "entry " + i, i, 8);
+            ranking.add(entries[i]);
+            clock += TimeUnit.MINUTES.toNanos(1);
+        }
+    }
+
+    @Benchmark
+    public boolean recordUse() {
+        clock += TimeUnit.MINUTES.toNanos(1);
+        return ranking.recordUse(entries[random.nextInt(historySize)]);
+    }
+
+    @Benchmark
+    public HistoryEntry cycleLookup() {
+        return ranking.get(cyclePosition);
+    }
+}
@@ -0,0 +1,58 @@
+package com.key.clipboarduse.main;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for {@link ClipboardWindow} on headless machines. Showing an item loads its text,
+ * as the real window does when preparing a page, but nothing is painted.
+ */
+final class HeadlessDisplay implements HistoryDisplay {
+    private final ClipboardManager manager;
+    private final AtomicLong shownItems = new AtomicLong();
+    private volatile boolean visible;
+    private volatile boolean searchActive;
+    private volatile int shownLength;
+
+    HeadlessDisplay(ClipboardManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public void showHistoryItem(int position) {
+        HistoryEntry entry = manager.getCycleEntry(position);
+        shownLength = entry == null ? 0 : manager.getText(entry).length();
+        shownItems.incrementAndGet();
+        visible = true;
+    }
+
+    @Override
+    public void openSearch() {
+        searchActive = true;
+        visible = true;
+    }
+
+    @Override
+    public boolean isSearchActive() {
+        return searchActive;
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        if (!visible) {
+            searchActive = false;
+        }
+    }
+
+    long getShownItems() {
+        return shownItems.get();
+    }
+
+    boolean isVisible() {
+        return visible;
+    }
+
+    int getShownLength() {
+        return shownLength;
+    }
+}
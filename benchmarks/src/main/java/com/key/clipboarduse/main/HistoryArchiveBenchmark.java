@@ -0,0 +1,87 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to export a whole history of {@code historySize} entries of 1 KB to a newline-delimited
+ * JSON file, and to import that file into an empty history, with and without gzip. Run with
+ * {@code -prof gc} to see that allocation per entry does not grow with history size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HistoryArchiveBenchmark {
+    private static final int ENTRY_SIZE = 1024;
+
+    @Param({"1000", "100000"})
+    public int historySize;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private Path directory;
+    private Path exported;
+    private ClipboardManager source;
+    private ClipboardManager target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("archive-benchmark");
+        exported = directory.resolve(gzip ? "history.ndjson.gz" : "history.ndjson");
+        source = new ClipboardManager(BenchmarkFixtures.clipboard(), BenchmarkFixtures.config(historySize));
+        for (String text : BenchmarkFixtures.texts(historySize, ENTRY_SIZE)) {
+            source.addToHistory(text);
+        }
+        source.exportHistory(exported, gzip);
+    }
+
+    @Setup(Level.Iteration)
+    public void openTarget() {
+        target = new ClipboardManager(BenchmarkFixtures.clipboard(), BenchmarkFixtures.config(historySize));
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeTarget() {
+        target.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        source.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long exportHistory() throws IOException {
+        return source.exportHistory(directory.resolve("export-" + exported.getFileName()), gzip);
+    }
+
+    @Benchmark
+    public int importHistory() throws IOException {
+        return target.importHistory(exported).getChanged();
+    }
+}
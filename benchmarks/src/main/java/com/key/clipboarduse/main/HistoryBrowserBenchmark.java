@@ -0,0 +1,119 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costs of the history browser over a long history:
+ * <ul>
+ *   <li>{@code openBrowser}: opening it with a fresh {@link HistoryListModel} and laying out the
+ *       list, which reads nothing from history since rows have a fixed size</li>
+ *   <li>{@code openCopying}: the baseline of copying a preview of every entry into a list model</li>
+ *   <li>{@code scrollPage}: rendering a page of rows at a random offset, as when dragging the
+ *       scroll bar; previews are loaded on the calling thread, so misses are included</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HistoryBrowserBenchmark {
+    private static final int PREVIEW_LENGTH = 160;
+    private static final int PAGE_ROWS = 20;
+
+    @Param({"1000", "100000"})
+    public int historySize;
+
+    private ClipboardManager manager;
+    private HistoryListModel model;
+    private JList<HistoryEntry> list;
+    private ListCellRenderer<Object> renderer;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Clipboard clipboard = BenchmarkFixtures.clipboard();
+        manager = new ClipboardManager(clipboard, BenchmarkFixtures.config(historySize));
+        for (String text : BenchmarkFixtures.texts(historySize, 200)) {
+            clipboard.setContents(new StringSelection(text), null);
+            manager.captureClipboard();
+        }
+        model = new HistoryListModel(manager, PREVIEW_LENGTH, Runnable::run);
+        model.refresh();
+        list = newList();
+        list.setModel(model);
+        renderer = new DefaultListCellRenderer();
+        random = new SplittableRandom(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public Dimension openBrowser() {
+        HistoryListModel fresh = new HistoryListModel(manager, PREVIEW_LENGTH, Runnable::run);
+        fresh.refresh();
+        JList<HistoryEntry> browser = newList();
+        browser.setModel(fresh);
+        return browser.getPreferredSize();
+    }
+
+    @Benchmark
+    public Dimension openCopying() {
+        DefaultListModel<String> copy = new DefaultListModel<>();
+        for (int position = 1; position <= manager.getHistorySize(); position++) {
+            String text = manager.getTextPrefix(manager.getHistoryEntry(position), PREVIEW_LENGTH + 1);
+            copy.addElement(HistoryListModel.preview(text, PREVIEW_LENGTH));
+        }
+        JList<String> browser = new JList<>(copy);
+        browser.setFont(list.getFont());
+        browser.setFixedCellHeight(list.getFixedCellHeight());
+        browser.setFixedCellWidth(list.getFixedCellWidth());
+        return browser.getPreferredSize();
+    }
+
+    @Benchmark
+    public void scrollPage(Blackhole blackhole) {
+        int first = random.nextInt(Math.max(1, model.getSize() - PAGE_ROWS));
+        for (int row = first; row < first + PAGE_ROWS && row < model.getSize(); row++) {
+            HistoryEntry entry = model.getElementAt(row);
+            blackhole.consume(renderer.getListCellRendererComponent(list, model.getPreview(entry), row, false, false));
+        }
+    }
+
+    private static JList<HistoryEntry> newList() {
+        JList<HistoryEntry> browser = new JList<>();
+        Font font = new Font("Dialog", Font.PLAIN, 14);
+        browser.setFont(font);
+        browser.setFixedCellHeight(browser.getFontMetrics(font).getHeight() + 4);
+        browser.setFixedCellWidth(1);
+        return browser;
+    }
+}
@@ -0,0 +1,131 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costs of image history entries:
+ * <ul>
+ *   <li>{@code captureRepeat}: copying an image already in history, which is recognized by its
+ *       pixel hash without encoding it again (the common case when the clipboard is polled)</li>
+ *   <li>{@code thumbnailCold}: decoding the preview of an image that is not cached</li>
+ *   <li>{@code thumbnailCached}: showing a preview from the {@link ThumbnailCache}, as when
+ *       cycling back over recent images</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImageHistoryBenchmark {
+
+    @Param({"1920x1080", "3840x2160"})
+    public String imageSize;
+
+    private Clipboard clipboard;
+    private ClipboardManager manager;
+    private ImageSelection selection;
+    private HistoryEntry entry;
+    private ThumbnailCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = imageSize.split("x");
+        BufferedImage image = screenshot(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        clipboard = BenchmarkFixtures.clipboard();
+        manager = new ClipboardManager(clipboard, BenchmarkFixtures.config(16));
+        selection = new ImageSelection(image);
+        clipboard.setContents(selection, null);
+        manager.captureClipboard();
+        entry = manager.getHistoryEntry(1);
+        cache = new ThumbnailCache(manager, 64L * 1024 * 1024, 640, 300);
+        cache.get(entry);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public boolean captureRepeat() {
+        clipboard.setContents(selection, null);
+        return manager.captureClipboard();
+    }
+
+    @Benchmark
+    public BufferedImage thumbnailCold() {
+        // A cache too small to hold the thumbnail decodes it on every call
+        return new ThumbnailCache(manager, 0, 640, 300).get(entry);
+    }
+
+    @Benchmark
+    public BufferedImage thumbnailCached() {
+        return cache.get(entry);
+    }
+
+    /**
+     * Draws a gradient with some text, which compresses about as well as a desktop screenshot.
+     */
+    private static BufferedImage screenshot(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(30, 60, 200), width, height, new Color(240, 220, 90)));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLACK);
+        for (int y = 40; y < height; y += 24) {
+            graphics.drawString("lorem ipsum dolor sit amet " + y, 40 + y % 200, y);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private static final class ImageSelection implements Transferable {
+        private final BufferedImage image;
+
+        ImageSelection(BufferedImage image) {
+            this.image = image;
+        }
+
+        @Override
+        public DataFlavor[] getTransferDataFlavors() {
+            return new DataFlavor[] {DataFlavor.imageFlavor};
+        }
+
+        @Override
+        public boolean isDataFlavorSupported(DataFlavor flavor) {
+            return DataFlavor.imageFlavor.equals(flavor);
+        }
+
+        @Override
+        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+            if (!isDataFlavorSupported(flavor)) {
+                throw new UnsupportedFlavorException(flavor);
+            }
+            return image;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Round trips through the history server on the loopback interface, as a script using
+ * {@link ClipboardCli} would make them.
+ * <p>
+ * With {@code source=heap} the entries were captured in this session and are served from their
+ * cached text. With {@code source=log} history was reopened from disk, so entries are only in the
+ * history log and {@code get} transfers them from the segment file to the socket without copying
+ * them into the heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class IpcBenchmark {
+    private static final int HISTORY_SIZE = 64;
+
+    @Param({"64", "65536", "1048576"})
+    public int entrySize;
+
+    @Param({"heap", "log"})
+    public String source;
+
+    private Path directory;
+    private ClipboardManager manager;
+    private HistoryServer server;
+
+    @State(Scope.Thread)
+    public static class ClientState {
+        HistoryClient client;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(IpcBenchmark benchmark) throws IOException {
+            client = new HistoryClient(benchmark.server.getEndpoint());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            client.close();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ipc-benchmark");
+        Properties properties = new Properties();
+        properties.setProperty(ClipboardConfig.HISTORY_DIRECTORY, directory.toString());
+        properties.setProperty(ClipboardConfig.MONITOR_POLL_INTERVAL, "0");
+        properties.setProperty(ClipboardConfig.EVENT_LOG_ENABLED, "false");
+        // Keep bodies uncompressed so log-resident entries can be transferred from the file
+        properties.setProperty(ClipboardConfig.COMPRESSION_THRESHOLD, Integer.toString(Integer.MAX_VALUE));
+        ClipboardConfig config = new ClipboardConfig(properties);
+        manager = new ClipboardManager(BenchmarkFixtures.clipboard(), config);
+        for (String text : BenchmarkFixtures.texts(HISTORY_SIZE, entrySize)) {
+            manager.addToHistory(text);
+        }
+        if ("log".equals(source)) {
+            manager.close();
+            manager = new ClipboardManager(BenchmarkFixtures.clipboard(), config);
+        }
+        server = new HistoryServer(manager, 0, directory.resolve(HistoryProtocol.ENDPOINT_FILE));
+        server.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+        manager.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Fetches whole entries, streaming them into a sink the way {@code ClipboardCli get} streams to stdout.
+     */
+    @Benchmark
+    public long get(ClientState state) throws IOException {
+        state.next = state.next % HISTORY_SIZE + 1;
+        return state.client.get(state.next, Sink.INSTANCE);
+    }
+
+    /**
+     * Lists twenty previews, as {@code ClipboardCli list} does.
+     */
+    @Benchmark
+    public List<HistoryClient.Item> listPreviews(ClientState state) throws IOException {
+        return state.client.list(1, 20, 120);
+    }
+
+    private static final class Sink implements WritableByteChannel {
+        static final Sink INSTANCE = new Sink();
+
+        @Override
+        public int write(ByteBuffer buffer) {
+            int length = buffer.remaining();
+            buffer.position(buffer.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
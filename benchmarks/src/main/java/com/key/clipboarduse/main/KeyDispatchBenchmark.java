@@ -0,0 +1,139 @@
+package com.key.clipboarduse.main;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks how long {@link KeyboardEventHandler} holds the native hook thread per key event.
+ * The Ctrl+C path only signals the clipboard monitor; the hotkey delay is set so long that the
+ * capture itself never runs during the measurement. Win+Shift cycling shows items on a
+ * {@link HeadlessDisplay}. {@code hotkeyLookup} measures the {@link HotkeyEngine} table lookup
+ * alone; run with {@code -prof gc} to confirm dispatch does not allocate. With
+ * {@code eventLog=on}, actions are also recorded to an {@link EventLog} writing to a temporary file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class KeyDispatchBenchmark {
+
+    @Param({"off", "on"})
+    public String eventLog;
+
+    private Path eventFile;
+    private ClipboardManager manager;
+    private ClipboardMonitor monitor;
+    private KeyboardEventHandler handler;
+    private HotkeyEngine engine;
+    private int[] keyCodes;
+    private int next;
+    private NativeKeyEvent ctrlPressed;
+    private NativeKeyEvent ctrlReleased;
+    private NativeKeyEvent cPressed;
+    private NativeKeyEvent cReleased;
+    private NativeKeyEvent aPressed;
+    private NativeKeyEvent aReleased;
+    private NativeKeyEvent metaPressed;
+    private NativeKeyEvent metaReleased;
+    private NativeKeyEvent shiftPressed;
+    private NativeKeyEvent shiftReleased;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        eventFile = Files.createTempFile("key-dispatch-events", ".log");
+        Properties properties = new Properties();
+        properties.setProperty(ClipboardConfig.EVENT_LOG_ENABLED, Boolean.toString("on".equals(eventLog)));
+        properties.setProperty(ClipboardConfig.EVENT_LOG_FILE, eventFile.toString());
+        properties.setProperty(ClipboardConfig.HISTORY_PERSIST, "false");
+        properties.setProperty(ClipboardConfig.MONITOR_POLL_INTERVAL, "0");
+        properties.setProperty(ClipboardConfig.MONITOR_HOTKEY_DELAY, Long.toString(TimeUnit.HOURS.toMillis(1)));
+        ClipboardConfig config = new ClipboardConfig(properties);
+        Clipboard clipboard = BenchmarkFixtures.clipboard();
+        manager = new ClipboardManager(clipboard, config);
+        monitor = new ClipboardMonitor(manager, config);
+        for (StringSelection selection : BenchmarkFixtures.selections(BenchmarkFixtures.texts(100, 64))) {
+            clipboard.setContents(selection, null);
+            manager.captureClipboard();
+        }
+        handler = new KeyboardEventHandler(new HeadlessDisplay(manager), manager, monitor);
+        engine = HotkeyEngine.defaults();
+        keyCodes = new int[] {NativeKeyEvent.VC_META, NativeKeyEvent.VC_SHIFT, NativeKeyEvent.VC_A,
+            NativeKeyEvent.VC_CONTROL, NativeKeyEvent.VC_C, NativeKeyEvent.VC_F, NativeKeyEvent.VC_E, NativeKeyEvent.VC_SPACE};
+        ctrlPressed = key(NativeKeyEvent.NATIVE_KEY_PRESSED, NativeKeyEvent.VC_CONTROL);
+        ctrlReleased = key(NativeKeyEvent.NATIVE_KEY_RELEASED, NativeKeyEvent.VC_CONTROL);
+        cPressed = key(NativeKeyEvent.NATIVE_KEY_PRESSED, NativeKeyEvent.VC_C);
+        cReleased = key(NativeKeyEvent.NATIVE_KEY_RELEASED, NativeKeyEvent.VC_C);
+        aPressed = key(NativeKeyEvent.NATIVE_KEY_PRESSED, NativeKeyEvent.VC_A);
+        aReleased = key(NativeKeyEvent.NATIVE_KEY_RELEASED, NativeKeyEvent.VC_A);
+        metaPressed = key(NativeKeyEvent.NATIVE_KEY_PRESSED, NativeKeyEvent.VC_META);
+        metaReleased = key(NativeKeyEvent.NATIVE_KEY_RELEASED, NativeKeyEvent.VC_META);
+        shiftPressed = key(NativeKeyEvent.NATIVE_KEY_PRESSED, NativeKeyEvent.VC_SHIFT);
+        shiftReleased = key(NativeKeyEvent.NATIVE_KEY_RELEASED, NativeKeyEvent.VC_SHIFT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        monitor.stop();
+        manager.close();
+        Files.deleteIfExists(eventFile);
+        Files.deleteIfExists(eventFile.resolveSibling(eventFile.getFileName() + ".1"));
+    }
+
+    @Benchmark
+    public void ctrlC() {
+        handler.nativeKeyPressed(ctrlPressed);
+        handler.nativeKeyPressed(cPressed);
+        handler.nativeKeyReleased(cReleased);
+        handler.nativeKeyReleased(ctrlReleased);
+    }
+
+    @Benchmark
+    public void unboundKey() {
+        handler.nativeKeyPressed(aPressed);
+        handler.nativeKeyReleased(aReleased);
+    }
+
+    @Benchmark
+    public void winShiftCycle() {
+        handler.nativeKeyPressed(metaPressed);
+        handler.nativeKeyPressed(shiftPressed);
+        handler.nativeKeyReleased(shiftReleased);
+        handler.nativeKeyPressed(shiftPressed);
+        handler.nativeKeyReleased(shiftReleased);
+        handler.nativeKeyReleased(metaReleased);
+    }
+
+    @Benchmark
+    public HotkeyEngine.Action hotkeyLookup() {
+        int keyCode = keyCodes[next++ & (keyCodes.length - 1)];
+        HotkeyEngine.Action pressed = engine.pressed(keyCode);
+        HotkeyEngine.Action released = engine.released(keyCode);
+        return pressed != null ? pressed : released;
+    }
+
+    private static NativeKeyEvent key(int id, int keyCode) {
+        return new NativeKeyEvent(id, 0, 0, keyCode, NativeKeyEvent.CHAR_UNDEFINED);
+    }
+}
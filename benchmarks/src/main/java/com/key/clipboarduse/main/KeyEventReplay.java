@@ -0,0 +1,196 @@
+package com.key.clipboarduse.main;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load harness that replays key event streams into {@link KeyboardEventHandler} with a headless
+ * display and an in-memory clipboard, then reports event throughput and the latency of each
+ * handler call, grouped by handler method and key.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.key.clipboarduse.main.KeyEventReplay [options]}
+ * <ul>
+ *   <li>{@code --scenario ctrl-c-burst|win-shift-cycle|auto-repeat|file:<path>} (default win-shift-cycle)</li>
+ *   <li>{@code --events <n>} number of events to replay (default 200000)</li>
+ *   <li>{@code --rate <events per second>} pacing, 0 replays as fast as possible (default 0)</li>
+ *   <li>{@code --history <n>} history entries captured before the replay (default 1000)</li>
+ *   <li>{@code --entry-size <chars>} size of each history entry (default 256)</li>
+ * </ul>
+ * A recorded file holds one event per line: {@code pressed|released <VC_ constant name>}, e.g.
+ * {@code pressed VC_META}. Blank lines and lines starting with {@code #} are skipped. The
+ * sequence is repeated until the event count is reached.
+ */
+public final class KeyEventReplay {
+
+    private KeyEventReplay() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        String scenario = options.getOrDefault("scenario", "win-shift-cycle");
+        int events = Integer.parseInt(options.getOrDefault("events", "200000"));
+        long rate = Long.parseLong(options.getOrDefault("rate", "0"));
+        int historySize = Integer.parseInt(options.getOrDefault("history", "1000"));
+        int entrySize = Integer.parseInt(options.getOrDefault("entry-size", "256"));
+
+        Properties properties = new Properties();
+        properties.setProperty(ClipboardConfig.HISTORY_CAPACITY, Integer.toString(historySize));
+        properties.setProperty(ClipboardConfig.HISTORY_PERSIST, "false");
+        properties.setProperty(ClipboardConfig.MONITOR_POLL_INTERVAL, "0");
+        properties.setProperty(ClipboardConfig.EVENT_LOG_ENABLED, "false");
+        ClipboardConfig config = new ClipboardConfig(properties);
+        Clipboard clipboard = BenchmarkFixtures.clipboard();
+        ClipboardManager manager = new ClipboardManager(clipboard, config);
+        for (StringSelection selection
+                : BenchmarkFixtures.selections(BenchmarkFixtures.texts(historySize, entrySize))) {
+            clipboard.setContents(selection, null);
+            manager.captureClipboard();
+        }
+        ClipboardMonitor monitor = new ClipboardMonitor(manager, config);
+        monitor.start();
+        HeadlessDisplay display = new HeadlessDisplay(manager);
+        KeyboardEventHandler handler = new KeyboardEventHandler(display, manager, monitor);
+
+        NativeKeyEvent[] sequence = sequence(scenario);
+        Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+        LatencyHistogram[] byEvent = new LatencyHistogram[sequence.length];
+        for (int i = 0; i < sequence.length; i++) {
+            byEvent[i] = latencies.computeIfAbsent(label(sequence[i]), label -> new LatencyHistogram());
+        }
+
+        long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            int index = i % sequence.length;
+            NativeKeyEvent event = sequence[index];
+            if (interval > 0) {
+                long due = start + i * interval;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            long before = System.nanoTime();
+            if (event.getID() == NativeKeyEvent.NATIVE_KEY_PRESSED) {
+                handler.nativeKeyPressed(event);
+            } else {
+                handler.nativeKeyReleased(event);
+            }
+            byEvent[index].record(System.nanoTime() - before);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("Scenario %s: %d events in %.1f ms, %.0f events/s (history %d x %d chars)%n",
+            scenario, events, elapsed / 1e6, events * 1e9 / elapsed, historySize, entrySize);
+        System.out.printf("%-32s %10s %10s %10s %10s %10s %10s%n",
+            "handler call", "count", "mean us", "p50 us", "p99 us", "p99.9 us", "max us");
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencySnapshot snapshot = entry.getValue().snapshot();
+            System.out.printf("%-32s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n", entry.getKey(), snapshot.getCount(),
+                snapshot.getMeanMicros(), snapshot.getP50Micros(), snapshot.getP99Micros(),
+                snapshot.getP999Micros(), snapshot.getMaxMicros());
+        }
+        System.out.printf("Items shown: %d, hotkey captures signalled: %d%n", display.getShownItems(),
+            monitor.getSignalCount(ClipboardMonitor.Source.HOTKEY));
+
+        monitor.stop();
+        manager.close();
+    }
+
+    /**
+     * Builds one repetition of a scenario's key sequence.
+     */
+    private static NativeKeyEvent[] sequence(String scenario) throws IOException {
+        List<NativeKeyEvent> events = new ArrayList<>();
+        if (scenario.startsWith("file:")) {
+            for (String line : Files.readAllLines(Paths.get(scenario.substring(5)), StandardCharsets.UTF_8)) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = trimmed.split("\\s+");
+                events.add(key("pressed".equals(parts[0]), keyCode(parts[1])));
+            }
+        } else {
+            switch (scenario) {
+                case "ctrl-c-burst":
+                    // Ctrl held while C is tapped repeatedly, as when copying several selections quickly
+                    events.add(key(true, NativeKeyEvent.VC_CONTROL));
+                    for (int i = 0; i < 20; i++) {
+                        events.add(key(true, NativeKeyEvent.VC_C));
+                        events.add(key(false, NativeKeyEvent.VC_C));
+                    }
+                    events.add(key(false, NativeKeyEvent.VC_CONTROL));
+                    break;
+                case "win-shift-cycle":
+                    // Win held while Shift is tapped through 50 items, then released to paste
+                    events.add(key(true, NativeKeyEvent.VC_META));
+                    for (int i = 0; i < 50; i++) {
+                        events.add(key(true, NativeKeyEvent.VC_SHIFT));
+                        events.add(key(false, NativeKeyEvent.VC_SHIFT));
+                    }
+                    events.add(key(false, NativeKeyEvent.VC_META));
+                    break;
+                case "auto-repeat":
+                    // Win held while Shift auto-repeats: pressed events without releases
+                    events.add(key(true, NativeKeyEvent.VC_META));
+                    for (int i = 0; i < 100; i++) {
+                        events.add(key(true, NativeKeyEvent.VC_SHIFT));
+                    }
+                    events.add(key(false, NativeKeyEvent.VC_SHIFT));
+                    events.add(key(false, NativeKeyEvent.VC_META));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown scenario: " + scenario);
+            }
+        }
+        if (events.isEmpty()) {
+            throw new IllegalArgumentException("Scenario " + scenario + " has no events");
+        }
+        return events.toArray(new NativeKeyEvent[0]);
+    }
+
+    private static NativeKeyEvent key(boolean pressed, int keyCode) {
+        int id = pressed ? NativeKeyEvent.NATIVE_KEY_PRESSED : NativeKeyEvent.NATIVE_KEY_RELEASED;
+        return new NativeKeyEvent(id, 0, 0, keyCode, NativeKeyEvent.CHAR_UNDEFINED);
+    }
+
+    private static int keyCode(String name) {
+        try {
+            Field field = NativeKeyEvent.class.getField(name);
+            return field.getInt(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unknown key: " + name, e);
+        }
+    }
+
+    private static String label(NativeKeyEvent event) {
+        String method = event.getID() == NativeKeyEvent.NATIVE_KEY_PRESSED ? "nativeKeyPressed" : "nativeKeyReleased";
+        return method + "(" + NativeKeyEvent.getKeyText(event.getKeyCode()) + ")";
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
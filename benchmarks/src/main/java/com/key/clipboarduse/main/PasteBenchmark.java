@@ -0,0 +1,106 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to paste one large history entry that is only on disk, from placing it on the clipboard
+ * until the pasting application has consumed it. History is reopened before every iteration so
+ * no entry text is cached.
+ * <p>
+ * With {@code flavor=string} the application asks for {@link DataFlavor#stringFlavor}, which
+ * loads the whole entry as a string (what every paste did before entries were streamed). With
+ * {@code flavor=stream} it reads {@link HistoryTransferable#UTF8_STREAM_FLAVOR}, which is served
+ * from the history log in chunks. Run with {@code -prof gc} to compare allocation per paste.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx1g"})
+public class PasteBenchmark {
+
+    @Param({"1048576", "67108864"})
+    public int entrySize;
+
+    @Param({"string", "stream"})
+    public String flavor;
+
+    private Path directory;
+    private ClipboardConfig config;
+    private Clipboard clipboard;
+    private ClipboardManager manager;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("paste-benchmark");
+        Properties properties = new Properties();
+        properties.setProperty(ClipboardConfig.HISTORY_DIRECTORY, directory.toString());
+        properties.setProperty(ClipboardConfig.HISTORY_BYTE_BUDGET, Long.toString(1L << 30));
+        properties.setProperty(ClipboardConfig.MONITOR_POLL_INTERVAL, "0");
+        properties.setProperty(ClipboardConfig.EVENT_LOG_ENABLED, "false");
+        config = new ClipboardConfig(properties);
+        clipboard = BenchmarkFixtures.clipboard();
+        ClipboardManager writer = new ClipboardManager(clipboard, config);
+        writer.addToHistory(BenchmarkFixtures.texts(1, entrySize)[0]);
+        writer.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void reopen() {
+        manager = new ClipboardManager(clipboard, config);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeHistory() {
+        manager.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long paste() throws IOException, UnsupportedFlavorException {
+        manager.setSystemClipboard(manager.getHistoryEntry(1));
+        if ("string".equals(flavor)) {
+            return ((String) clipboard.getData(DataFlavor.stringFlavor)).length();
+        }
+        long length = 0;
+        try (InputStream in = (InputStream) clipboard.getData(HistoryTransferable.UTF8_STREAM_FLAVOR)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                length += read;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,157 @@
+package com.key.clipboarduse.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures time to first capture of a freshly started JVM: from launching the process until it
+ * has loaded its history and stored the first clipboard change. Each invocation runs
+ * {@link StartupProbe} in a new process on a fresh copy of a history directory holding
+ * {@code historySize} entries.
+ * <p>
+ * With {@code cds=on} the child uses the class-data-sharing archive built by
+ * {@code mvn package -Pcds} in the application module. The application jar comes first on the
+ * child class path so the archive matches it; set {@code -Dstartup.appJar} and
+ * {@code -Dstartup.archive} if the defaults ({@code ../target/...}) do not fit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class StartupBenchmark {
+
+    @Param({"0", "10000"})
+    private int historySize;
+
+    @Param({"off", "on"})
+    private String cds;
+
+    private Path template;
+    private Path workDirectory;
+    private List<String> command;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path appJar = Paths.get(System.getProperty("startup.appJar", "../target/clipboard-utility.jar")).toAbsolutePath();
+        Path archive = Paths.get(System.getProperty("startup.archive", "../target/clipboard-utility.jsa")).toAbsolutePath();
+        if (!Files.isRegularFile(appJar)) {
+            throw new IllegalStateException("Application jar not found: " + appJar + " (run mvn package in the parent directory)");
+        }
+        if ("on".equals(cds) && !Files.isRegularFile(archive)) {
+            throw new IllegalStateException("Archive not found: " + archive + " (run mvn package -Pcds in the parent directory)");
+        }
+        template = Files.createTempDirectory("clipboard-startup");
+        writeHistory(template.resolve("history"));
+
+        String benchmarksJar = Paths.get(StartupProbe.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Djava.awt.headless=true");
+        if ("on".equals(cds)) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.add("-cp");
+        command.add(appJar + File.pathSeparator + benchmarksJar);
+        command.add(StartupProbe.class.getName());
+    }
+
+    @Setup(Level.Invocation)
+    public void copyHistory() throws IOException {
+        workDirectory = Files.createTempDirectory("clipboard-startup-run");
+        Path source = template.resolve("history");
+        Path target = workDirectory.resolve("history");
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.copy(path, target.resolve(source.relativize(path).toString()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteRun() throws IOException {
+        delete(workDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(template);
+    }
+
+    @Benchmark
+    public void timeToFirstCapture() throws IOException, InterruptedException {
+        List<String> run = new ArrayList<>(command);
+        run.add(workDirectory.resolve("history").toString());
+        run.add(Integer.toString(Math.max(historySize, 100) + 1));
+        Process process = new ProcessBuilder(run)
+            .directory(workDirectory.toFile())
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StartupProbe.CAPTURED.equals(line)) {
+                    return;
+                }
+            }
+            throw new IllegalStateException("Startup probe exited with " + process.waitFor() + " before capturing");
+        } finally {
+            process.destroyForcibly();
+            process.waitFor();
+        }
+    }
+
+    private void writeHistory(Path directory) {
+        Properties properties = new Properties();
+        properties.setProperty(ClipboardConfig.HISTORY_DIRECTORY, directory.toString());
+        properties.setProperty(ClipboardConfig.HISTORY_CAPACITY, Integer.toString(Math.max(historySize, 100) + 1));
+        properties.setProperty(ClipboardConfig.MONITOR_POLL_INTERVAL, "0");
+        properties.setProperty(ClipboardConfig.EVENT_LOG_ENABLED, "false");
+        Clipboard clipboard = BenchmarkFixtures.clipboard();
+        ClipboardManager manager = new ClipboardManager(clipboard, new ClipboardConfig(properties));
+        for (StringSelection selection : BenchmarkFixtures.selections(BenchmarkFixtures.texts(historySize, 256))) {
+            clipboard.setContents(selection, null);
+            manager.captureClipboard();
+        }
+        manager.close();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.key.clipboarduse.main;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Child process started by {@link StartupBenchmark}. Starts capturing with the history in the
+ * given directory, copies one entry to an in-memory clipboard, and prints {@value #CAPTURED}
+ * once that entry is in history. It then halts without closing history, since the benchmark
+ * gives every run a fresh copy of the directory.
+ */
+public final class StartupProbe {
+    static final String CAPTURED = "captured";
+
+    private StartupProbe() {
+    }
+
+    public static void main(String[] args) {
+        Properties properties = new Properties();
+        properties.setProperty(ClipboardConfig.HISTORY_DIRECTORY, args[0]);
+        properties.setProperty(ClipboardConfig.HISTORY_CAPACITY, args[1]);
+        properties.setProperty(ClipboardConfig.MONITOR_POLL_INTERVAL, "0");
+        properties.setProperty(ClipboardConfig.EVENT_LOG_ENABLED, "false");
+        properties.setProperty(ClipboardConfig.MONITOR_COALESCE_DELAY, "0");
+        // Leave the endpoint file of a running instance alone
+        properties.setProperty(ClipboardConfig.IPC_ENABLED, "false");
+        Clipboard clipboard = new Clipboard("startup");
+        ClipboardApplication application = new ClipboardApplication(new ClipboardConfig(properties), clipboard);
+        application.startCapture();
+        ClipboardManager manager = application.getClipboardManager();
+
+        String marker = "first capture " + System.nanoTime();
+        clipboard.setContents(new StringSelection(marker), null);
+        while (!marker.equals(manager.getHistoryItem(1))) {
+            LockSupport.parkNanos(50_000);
+        }
+        System.out.println(CAPTURED);
+        System.out.flush();
+        Runtime.getRuntime().halt(0);
+    }
+}
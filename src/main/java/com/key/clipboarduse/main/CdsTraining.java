@@ -0,0 +1,73 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import java.awt.GraphicsEnvironment;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Training run for the class-data-sharing archive built by the {@code cds} Maven profile.
+ * Goes through start-up, a few captures, a search and the hotkey tables against an in-memory
+ * clipboard and a temporary history directory, so the classes they load are recorded. The
+ * popup window is built too when a display is available.
+ */
+public final class CdsTraining {
+    private static final Logger logger = LoggerFactory.getLogger(CdsTraining.class);
+
+    private CdsTraining() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, InvocationTargetException {
+        Path directory = Files.createTempDirectory("clipboard-cds");
+        try {
+            Properties properties = new Properties();
+            properties.setProperty(ClipboardConfig.HISTORY_DIRECTORY, directory.toString());
+            properties.setProperty(ClipboardConfig.MONITOR_POLL_INTERVAL, "0");
+            // Leave the endpoint file of a running instance alone
+            properties.setProperty(ClipboardConfig.IPC_ENABLED, "false");
+            ClipboardConfig config = new ClipboardConfig(properties);
+            Clipboard clipboard = new Clipboard("cds-training");
+            ClipboardApplication application = new ClipboardApplication(config, clipboard);
+            application.startCapture();
+            ClipboardManager manager = application.getClipboardManager();
+            for (int i = 0; i < 32; i++) {
+                clipboard.setContents(new StringSelection("training entry " + i), null);
+                manager.captureClipboard();
+            }
+            manager.search("entry 1", 10);
+            manager.getHistoryItem(1);
+
+            HotkeyEngine hotkeys = HotkeyEngine.fromConfig(config);
+            SwingUtilities.invokeAndWait(() -> {
+                ClipboardWindow.setupLookAndFeel();
+                if (GraphicsEnvironment.isHeadless()) {
+                    new JScrollPane(new JTextArea("training")).getPreferredSize();
+                    new JList<>(new String[] {"training"}).getPreferredSize();
+                } else {
+                    ClipboardWindow window = new ClipboardWindow(manager, hotkeys, config.getThumbnailCacheSize());
+                    window.prewarm();
+                    window.dispose();
+                }
+            });
+            application.close();
+            logger.info("Class-data-sharing training run finished");
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
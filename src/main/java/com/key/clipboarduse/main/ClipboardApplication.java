@@ -0,0 +1,156 @@
+package com.key.clipboarduse.main;
+
+import com.github.kwhat.jnativehook.GlobalScreen;
+import com.github.kwhat.jnativehook.NativeHookException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.SwingUtilities;
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts and stops the parts of the Clipboard Utility.
+ * Start-up runs three things at once: the native hook is registered on its own thread, the
+ * Look and Feel is installed on the event dispatch thread, and history is loaded on the calling
+ * thread. Clipboard changes are captured as soon as history is loaded; hotkeys work once the
+ * hook is registered. The popup window is built after that, or on first use if that comes first.
+ */
+public class ClipboardApplication {
+    private static final Logger logger = LoggerFactory.getLogger(ClipboardApplication.class);
+
+    private final ClipboardConfig config;
+    private final Clipboard clipboard;
+    private final long createdAt = System.nanoTime();
+    private ClipboardManager clipboardManager;
+    private ClipboardMonitor clipboardMonitor;
+    private LazyHistoryDisplay display;
+    private HistoryServer historyServer;
+    private boolean hookRegistered;
+
+    public ClipboardApplication(ClipboardConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Creates the application for a given clipboard.
+     * @param config the configuration
+     * @param clipboard the clipboard to watch, or null for the system clipboard
+     */
+    public ClipboardApplication(ClipboardConfig config, Clipboard clipboard) {
+        this.config = config;
+        this.clipboard = clipboard;
+    }
+
+    /**
+     * Starts capturing, registers the hotkeys and prepares the popup window.
+     * @throws NativeHookException if the native hook cannot be registered
+     */
+    public void start() throws NativeHookException {
+        CompletableFuture<Void> hook = CompletableFuture.runAsync(ClipboardApplication::registerNativeHook,
+            runnable -> {
+                Thread thread = new Thread(runnable, "clipboard-hook-init");
+                thread.setDaemon(true);
+                thread.start();
+            });
+        SwingUtilities.invokeLater(ClipboardWindow::setupLookAndFeel);
+
+        startCapture();
+        HotkeyEngine hotkeys = HotkeyEngine.fromConfig(config);
+        display = new LazyHistoryDisplay(() -> new ClipboardWindow(clipboardManager, hotkeys, config.getThumbnailCacheSize()));
+
+        try {
+            hook.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NativeHookException) {
+                throw (NativeHookException) e.getCause();
+            }
+            throw e;
+        }
+        hookRegistered = true;
+        GlobalScreen.addNativeKeyListener(new KeyboardEventHandler(display, clipboardManager, clipboardMonitor, hotkeys));
+        logger.info("Hotkeys ready after {} ms", elapsedMillis());
+        logger.info("Press {} to capture clipboard, {} to cycle through history",
+            hotkeys.describe(HotkeyEngine.Action.CAPTURE), hotkeys.describe(HotkeyEngine.Action.CYCLE));
+        logger.info("Press {} to search history, {} to exit",
+            hotkeys.describe(HotkeyEngine.Action.SEARCH), hotkeys.describe(HotkeyEngine.Action.EXIT));
+
+        display.buildWhenIdle();
+    }
+
+    /**
+     * Loads history, starts watching the clipboard and, if enabled, starts the history server.
+     * Needs neither the native hook nor a display.
+     */
+    public void startCapture() {
+        clipboardManager = new ClipboardManager(clipboard != null ? clipboard : Toolkit.getDefaultToolkit().getSystemClipboard(), config);
+        clipboardMonitor = new ClipboardMonitor(clipboardManager, config);
+        clipboardManager.getMetrics().register();
+        clipboardMonitor.start();
+        if (config.isIpcEnabled()) {
+            startHistoryServer();
+        }
+        logger.info("Capturing clipboard changes after {} ms", elapsedMillis());
+    }
+
+    public ClipboardManager getClipboardManager() {
+        return clipboardManager;
+    }
+
+    /**
+     * Stops the hook, the history server and the monitor, releases the window and closes history.
+     */
+    public void close() {
+        if (hookRegistered) {
+            try {
+                GlobalScreen.unregisterNativeHook();
+                logger.info("Native hook unregistered");
+            } catch (NativeHookException e) {
+                logger.error("Failed to unregister native hook", e);
+            }
+        }
+        if (display != null) {
+            display.dispose();
+        }
+        if (historyServer != null) {
+            historyServer.close();
+        }
+        if (clipboardMonitor != null) {
+            clipboardMonitor.stop();
+        }
+        if (clipboardManager != null) {
+            clipboardManager.getMetrics().unregister();
+            clipboardManager.close();
+        }
+    }
+
+    private void startHistoryServer() {
+        try {
+            historyServer = new HistoryServer(clipboardManager, config.getIpcPort(), HistoryProtocol.defaultEndpointFile());
+            historyServer.start();
+        } catch (IOException e) {
+            logger.error("Failed to start history server; scripts cannot reach history", e);
+            if (historyServer != null) {
+                historyServer.close();
+                historyServer = null;
+            }
+        }
+    }
+
+    private static void registerNativeHook() {
+        try {
+            GlobalScreen.registerNativeHook();
+            logger.info("Native hook registered successfully");
+        } catch (NativeHookException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdAt);
+    }
+}
@@ -0,0 +1,137 @@
+package com.key.clipboarduse.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Command-line client for the history server of a running Clipboard Utility.
+ * <pre>
+ * java -cp clipboard-utility.jar com.key.clipboarduse.main.ClipboardCli get [N]
+ * java -cp clipboard-utility.jar com.key.clipboarduse.main.ClipboardCli list [START] [COUNT]
+ * java -cp clipboard-utility.jar com.key.clipboarduse.main.ClipboardCli search QUERY [LIMIT]
+ * java -cp clipboard-utility.jar com.key.clipboarduse.main.ClipboardCli push [TEXT]
+ * java -cp clipboard-utility.jar com.key.clipboarduse.main.ClipboardCli export FILE [--gzip]
+ * java -cp clipboard-utility.jar com.key.clipboarduse.main.ClipboardCli import FILE
+ * </pre>
+ * {@code get} prints item N (1 is the most recent) exactly as stored. {@code list} and
+ * {@code search} print one line per item: its number, a tab, and its start with line breaks
+ * shown as {@code \n}. {@code push} adds TEXT, or standard input, to history. {@code export}
+ * writes the whole history to FILE as newline-delimited JSON, gzip-compressed with
+ * {@code --gzip} or a {@code .gz} name, and {@code import} adds the entries of such a file.
+ */
+public final class ClipboardCli {
+    private static final int PREVIEW_CHARS = 120;
+    private static final int DEFAULT_LIST_COUNT = 20;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+
+    private ClipboardCli() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            usage();
+            System.exit(2);
+        }
+        Path endpointFile = System.getProperty("clipboard.ipc.endpoint") != null
+            ? Paths.get(System.getProperty("clipboard.ipc.endpoint"))
+            : HistoryProtocol.defaultEndpointFile();
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        try (HistoryClient client = HistoryClient.connect(endpointFile)) {
+            int status = run(client, args, out);
+            out.flush();
+            System.exit(status);
+        } catch (IOException e) {
+            System.err.println("clipboard: " + e.getMessage() + " (is Clipboard Utility running?)");
+            System.exit(1);
+        } catch (NumberFormatException e) {
+            usage();
+            System.exit(2);
+        }
+    }
+
+    private static int run(HistoryClient client, String[] args, PrintStream out) throws IOException {
+        switch (args[0]) {
+            case "get": {
+                WritableByteChannel target = Channels.newChannel(out);
+                if (client.get(args.length > 1 ? Integer.parseInt(args[1]) : 1, target) < 0) {
+                    System.err.println("clipboard: no such history item");
+                    return 1;
+                }
+                return 0;
+            }
+            case "list": {
+                int start = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+                int count = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_LIST_COUNT;
+                print(client.list(start, count, PREVIEW_CHARS), out);
+                return 0;
+            }
+            case "search": {
+                if (args.length < 2) {
+                    usage();
+                    return 2;
+                }
+                int limit = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SEARCH_LIMIT;
+                List<HistoryClient.Item> items = client.search(args[1], limit, PREVIEW_CHARS);
+                print(items, out);
+                return items.isEmpty() ? 1 : 0;
+            }
+            case "push": {
+                String text = args.length > 1 ? args[1] : readStandardInput();
+                out.println(client.push(text) ? "added" : "unchanged");
+                return 0;
+            }
+            case "export": {
+                if (args.length < 2) {
+                    usage();
+                    return 2;
+                }
+                boolean gzip = args[1].endsWith(".gz") || (args.length > 2 && "--gzip".equals(args[2]));
+                out.println("exported " + client.exportHistory(Paths.get(args[1]), gzip) + " items");
+                return 0;
+            }
+            case "import": {
+                if (args.length < 2) {
+                    usage();
+                    return 2;
+                }
+                HistoryArchive.Summary summary = client.importHistory(Paths.get(args[1]));
+                out.println("imported " + summary.getEntries() + " items (" + summary.getChanged() + " changed history)");
+                return 0;
+            }
+            default:
+                usage();
+                return 2;
+        }
+    }
+
+    private static void print(List<HistoryClient.Item> items, PrintStream out) {
+        for (HistoryClient.Item item : items) {
+            String preview = item.getText().replace("\\", "\\\\").replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t");
+            out.println(item.getOffsetFromEnd() + "\t" + preview);
+        }
+    }
+
+    private static String readStandardInput() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        InputStream in = System.in;
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) >= 0) {
+            buffer.write(chunk, 0, read);
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: ClipboardCli get [N] | list [START] [COUNT] | search QUERY [LIMIT] | push [TEXT]"
+            + " | export FILE [--gzip] | import FILE");
+    }
+}
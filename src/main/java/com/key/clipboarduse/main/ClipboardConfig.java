@@ -0,0 +1,371 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Runtime configuration for the Clipboard Utility.
+ * Settings are read from {@code ~/.clipboard-utility/config.properties} and can be
+ * overridden with system properties of the same name (e.g. {@code -Dclipboard.history.capacity=50000}).
+ */
+public class ClipboardConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ClipboardConfig.class);
+
+    public static final String HISTORY_CAPACITY = "clipboard.history.capacity";
+    public static final String HISTORY_PERSIST = "clipboard.history.persist";
+    public static final String HISTORY_DIRECTORY = "clipboard.history.directory";
+    public static final String HISTORY_SEGMENT_SIZE = "clipboard.history.segment-size";
+    public static final String HISTORY_BYTE_BUDGET = "clipboard.history.byte-budget";
+    public static final String HISTORY_ORDER = "clipboard.history.order";
+    public static final String HISTORY_FRECENCY_HALF_LIFE = "clipboard.history.frecency-half-life";
+    public static final String COMPRESSION_THRESHOLD = "clipboard.storage.compression-threshold";
+    public static final String SEARCH_MAX_INDEXED_CHARS = "clipboard.search.max-indexed-chars";
+    public static final String MONITOR_POLL_INTERVAL = "clipboard.monitor.poll-interval";
+    public static final String MONITOR_COALESCE_DELAY = "clipboard.monitor.coalesce-delay";
+    public static final String MONITOR_HOTKEY_DELAY = "clipboard.monitor.hotkey-delay";
+    public static final String MEMORY_SPILL_THRESHOLD = "clipboard.memory.spill-threshold";
+    public static final String PREVIEW_THUMBNAIL_CACHE = "clipboard.preview.thumbnail-cache";
+    public static final String EVENT_LOG_ENABLED = "clipboard.events.enabled";
+    public static final String EVENT_LOG_FILE = "clipboard.events.file";
+    public static final String EVENT_LOG_BUFFER_SIZE = "clipboard.events.buffer-size";
+    public static final String EVENT_LOG_MAX_FILE_SIZE = "clipboard.events.max-file-size";
+    public static final String IPC_ENABLED = "clipboard.ipc.enabled";
+    public static final String IPC_PORT = "clipboard.ipc.port";
+    public static final String HOTKEY_CAPTURE = "clipboard.hotkey.capture";
+    public static final String HOTKEY_CYCLE = "clipboard.hotkey.cycle";
+    public static final String HOTKEY_SEARCH = "clipboard.hotkey.search";
+    public static final String HOTKEY_EXIT = "clipboard.hotkey.exit";
+    public static final String DEFAULT_CAPTURE_HOTKEY = "ctrl+C";
+    public static final String DEFAULT_CYCLE_HOTKEY = "meta+shift";
+    public static final String DEFAULT_SEARCH_HOTKEY = "meta+shift+F";
+    public static final String DEFAULT_EXIT_HOTKEY = "meta+shift+E";
+
+    static final String CONFIG_DIRECTORY = ".clipboard-utility";
+    private static final String CONFIG_FILE = "config.properties";
+    private static final int DEFAULT_HISTORY_CAPACITY = 100;
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+    private static final long DEFAULT_BYTE_BUDGET = 64L * 1024 * 1024;
+    private static final String ORDER_FRECENCY = "frecency";
+    private static final int DEFAULT_FRECENCY_HALF_LIFE_HOURS = 24;
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 16 * 1024;
+    private static final int DEFAULT_MAX_INDEXED_CHARS = 64 * 1024;
+    private static final int DEFAULT_POLL_INTERVAL_MILLIS = 1000;
+    private static final int DEFAULT_COALESCE_DELAY_MILLIS = 25;
+    private static final int DEFAULT_HOTKEY_DELAY_MILLIS = 100;
+    private static final int DEFAULT_SPILL_THRESHOLD_PERCENT = 75;
+    private static final long DEFAULT_THUMBNAIL_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final int DEFAULT_EVENT_LOG_BUFFER_SIZE = 4096;
+    private static final int MIN_EVENT_LOG_BUFFER_SIZE = 16;
+    private static final long DEFAULT_EVENT_LOG_MAX_FILE_SIZE = 4L * 1024 * 1024;
+    private static final long MIN_EVENT_LOG_MAX_FILE_SIZE = 64 * 1024;
+
+    private final Properties properties;
+
+    public ClipboardConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Loads the configuration file (if present) and applies system property overrides.
+     * @return the effective configuration
+     */
+    public static ClipboardConfig load() {
+        Properties properties = new Properties();
+        Path configFile = defaultDirectory().resolve(CONFIG_FILE);
+        if (Files.isRegularFile(configFile)) {
+            try (InputStream in = Files.newInputStream(configFile)) {
+                properties.load(in);
+                logger.info("Loaded configuration from {}", configFile);
+            } catch (IOException e) {
+                logger.warn("Failed to read configuration file {}, using defaults", configFile, e);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("clipboard.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return new ClipboardConfig(properties);
+    }
+
+    /**
+     * Returns the directory holding the configuration file and application data.
+     * @return the configuration directory
+     */
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), CONFIG_DIRECTORY);
+    }
+
+    /**
+     * Returns the maximum number of entries kept in clipboard history.
+     * @return the history capacity
+     */
+    public int getHistoryCapacity() {
+        return getInt(HISTORY_CAPACITY, DEFAULT_HISTORY_CAPACITY, 1);
+    }
+
+    /**
+     * Returns whether clipboard history is persisted across restarts.
+     * @return true if history is written to disk
+     */
+    public boolean isHistoryPersistent() {
+        return getBoolean(HISTORY_PERSIST, true);
+    }
+
+    /**
+     * Returns the directory holding the persistent history log.
+     * @return the history directory
+     */
+    public Path getHistoryDirectory() {
+        String value = properties.getProperty(HISTORY_DIRECTORY);
+        return value != null ? Paths.get(value.trim()) : defaultDirectory().resolve("history");
+    }
+
+    /**
+     * Returns the size in bytes after which the history log starts a new segment file.
+     * @return the segment size
+     */
+    public int getHistorySegmentSize() {
+        return getInt(HISTORY_SEGMENT_SIZE, DEFAULT_SEGMENT_SIZE, MIN_SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns the maximum total size of stored history bodies before the oldest entries are evicted.
+     * @return the byte budget
+     */
+    public long getHistoryByteBudget() {
+        return getLong(HISTORY_BYTE_BUDGET, DEFAULT_BYTE_BUDGET, 1);
+    }
+
+    /**
+     * Returns whether Win+Shift cycles through history by frecency instead of most recent first.
+     * @return true if {@code clipboard.history.order} is {@code frecency}
+     */
+    public boolean isFrecencyOrder() {
+        return ORDER_FRECENCY.equalsIgnoreCase(getString(HISTORY_ORDER, "recency"));
+    }
+
+    /**
+     * Returns the time after which a copy or paste counts half as much towards frecency.
+     * @return the half-life in hours
+     */
+    public int getFrecencyHalfLife() {
+        return getInt(HISTORY_FRECENCY_HALF_LIFE, DEFAULT_FRECENCY_HALF_LIFE_HOURS, 1);
+    }
+
+    /**
+     * Returns the UTF-8 size from which history entries are kept compressed.
+     * @return the compression threshold in bytes
+     */
+    public int getCompressionThreshold() {
+        return getInt(COMPRESSION_THRESHOLD, DEFAULT_COMPRESSION_THRESHOLD, 1);
+    }
+
+    /**
+     * Returns how many leading characters of each entry are added to the search index.
+     * @return the indexed prefix length
+     */
+    public int getSearchMaxIndexedChars() {
+        return getInt(SEARCH_MAX_INDEXED_CHARS, DEFAULT_MAX_INDEXED_CHARS, 3);
+    }
+
+    /**
+     * Returns how often the clipboard monitor polls for changes that raised no event.
+     * @return the poll interval in milliseconds, or 0 if polling is disabled
+     */
+    public int getMonitorPollInterval() {
+        return getInt(MONITOR_POLL_INTERVAL, DEFAULT_POLL_INTERVAL_MILLIS, 0);
+    }
+
+    /**
+     * Returns how long the clipboard monitor waits after a change event so bursts collapse into one capture.
+     * @return the coalescing delay in milliseconds
+     */
+    public int getMonitorCoalesceDelay() {
+        return getInt(MONITOR_COALESCE_DELAY, DEFAULT_COALESCE_DELAY_MILLIS, 0);
+    }
+
+    /**
+     * Returns how long to wait after Ctrl+C before reading the clipboard, giving the source application time to fill it.
+     * @return the hotkey capture delay in milliseconds
+     */
+    public int getMonitorHotkeyDelay() {
+        return getInt(MONITOR_HOTKEY_DELAY, DEFAULT_HOTKEY_DELAY_MILLIS, 0);
+    }
+
+    /**
+     * Returns how full a heap pool may get, as a share of its maximum size, before history
+     * bodies are spilled from the heap to disk.
+     * @return the threshold in percent, or 0 if memory pressure is not monitored
+     */
+    public int getSpillThreshold() {
+        return getInt(MEMORY_SPILL_THRESHOLD, DEFAULT_SPILL_THRESHOLD_PERCENT, 0);
+    }
+
+    /**
+     * Returns how much memory the preview window may spend on cached image thumbnails.
+     * @return the thumbnail cache size in bytes
+     */
+    public long getThumbnailCacheSize() {
+        return getLong(PREVIEW_THUMBNAIL_CACHE, DEFAULT_THUMBNAIL_CACHE_BYTES, 0);
+    }
+
+    /**
+     * Returns whether hot-path events (key actions, captures, evictions) are written to the event log.
+     * @return true if the event log is enabled
+     */
+    public boolean isEventLogEnabled() {
+        return getBoolean(EVENT_LOG_ENABLED, true);
+    }
+
+    /**
+     * Returns the file the event log is written to; one older file is kept next to it.
+     * @return the event log file
+     */
+    public Path getEventLogFile() {
+        String value = properties.getProperty(EVENT_LOG_FILE);
+        return value != null ? Paths.get(value.trim()) : defaultDirectory().resolve("events.log");
+    }
+
+    /**
+     * Returns how many events may wait to be written before further events are dropped.
+     * @return the event buffer size
+     */
+    public int getEventLogBufferSize() {
+        return getInt(EVENT_LOG_BUFFER_SIZE, DEFAULT_EVENT_LOG_BUFFER_SIZE, MIN_EVENT_LOG_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the size in bytes after which the event log file is rolled over.
+     * @return the maximum event log file size
+     */
+    public long getEventLogMaxFileSize() {
+        return getLong(EVENT_LOG_MAX_FILE_SIZE, DEFAULT_EVENT_LOG_MAX_FILE_SIZE, MIN_EVENT_LOG_MAX_FILE_SIZE);
+    }
+
+    /**
+     * Returns whether scripts can query and push history over the local IPC server.
+     * @return true if the IPC server runs
+     */
+    public boolean isIpcEnabled() {
+        return getBoolean(IPC_ENABLED, true);
+    }
+
+    /**
+     * Returns the loopback port the IPC server listens on.
+     * @return the port, or 0 to pick a free one
+     */
+    public int getIpcPort() {
+        return getInt(IPC_PORT, 0, 0);
+    }
+
+    /**
+     * Returns the chord that captures the clipboard, e.g. {@code ctrl+C}.
+     * @return the chord text
+     */
+    public String getCaptureHotkey() {
+        return getString(HOTKEY_CAPTURE, DEFAULT_CAPTURE_HOTKEY);
+    }
+
+    /**
+     * Returns the chord that cycles through history; releasing its modifiers pastes the shown item.
+     * @return the chord text
+     */
+    public String getCycleHotkey() {
+        return getString(HOTKEY_CYCLE, DEFAULT_CYCLE_HOTKEY);
+    }
+
+    /**
+     * Returns the chord that opens history search.
+     * @return the chord text
+     */
+    public String getSearchHotkey() {
+        return getString(HOTKEY_SEARCH, DEFAULT_SEARCH_HOTKEY);
+    }
+
+    /**
+     * Returns the chord that exits the application.
+     * @return the chord text
+     */
+    public String getExitHotkey() {
+        return getString(HOTKEY_EXIT, DEFAULT_EXIT_HOTKEY);
+    }
+
+    /**
+     * Reads a string setting, falling back to the default when missing or blank.
+     * @param key the setting name
+     * @param defaultValue the value used when the setting is absent
+     * @return the trimmed setting value
+     */
+    String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Reads a boolean setting, falling back to the default when missing.
+     * @param key the setting name
+     * @param defaultValue the value used when the setting is absent
+     * @return the setting value
+     */
+    boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Reads a long setting, falling back to the default when missing or invalid.
+     * @param key the setting name
+     * @param defaultValue the value used when the setting is absent or malformed
+     * @param minimum the smallest accepted value
+     * @return the setting value
+     */
+    long getLong(String key, long defaultValue, long minimum) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed >= minimum) {
+                return parsed;
+            }
+            logger.warn("Setting {}={} is below the minimum of {}, using {}", key, value, minimum, defaultValue);
+        } catch (NumberFormatException e) {
+            logger.warn("Setting {}={} is not a valid number, using {}", key, value, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Reads an integer setting, falling back to the default when missing or invalid.
+     * @param key the setting name
+     * @param defaultValue the value used when the setting is absent or malformed
+     * @param minimum the smallest accepted value
+     * @return the setting value
+     */
+    int getInt(String key, int defaultValue, int minimum) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= minimum) {
+                return parsed;
+            }
+            logger.warn("Setting {}={} is below the minimum of {}, using {}", key, value, minimum, defaultValue);
+        } catch (NumberFormatException e) {
+            logger.warn("Setting {}={} is not a valid number, using {}", key, value, defaultValue);
+        }
+        return defaultValue;
+    }
+}
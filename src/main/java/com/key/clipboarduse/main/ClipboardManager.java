@@ -3,99 +3,1083 @@ package com.key.clipboarduse.main;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.Image;
 import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.ClipboardOwner;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 /**
  * Manages clipboard history and operations.
- * Stores clipboard items in a list for easy navigation through history.
+ * Stores clipboard items in a fixed-capacity ring buffer for easy navigation through history.
+ * Text, copied files and images are captured; images are stored PNG-encoded and only decoded
+ * when they are shown or pasted.
+ * When persistence is enabled, every entry is also written to a {@link HistoryLog} so history
+ * survives restarts; restored entries are read from disk only when they are accessed.
+ * History is bounded both by entry count and by the total stored bytes tracked by
+ * {@link HistoryStorage}, which also keeps large entries compressed.
+ * Every entry is indexed by its 64-bit content hash, so copying content that is already
+ * in history moves the existing entry to the front instead of storing it again.
+ * A {@link SearchIndex} is kept in step with every capture, move and eviction. In frecency order,
+ * a {@link FrecencyRanking} additionally ranks entries by how often and how recently they were
+ * copied or picked, and Win+Shift cycles through that ranking.
+ * Capture runs as a pipeline of {@link PipelineStage}s: the clipboard is read on the calling
+ * thread, then normalized, stored, indexed and persisted on stages connected by bounded queues.
+ * History changes take the write lock of a {@link StampedLock}; lookups read optimistically
+ * without locking and only fall back to the read lock if writes keep interfering.
+ * A {@link MemoryPressureMonitor} spills entry bodies from the heap when the JVM runs short of
+ * memory. Bodies are then read back from the history log, or from a temporary spill log when
+ * history is not persisted.
  */
 public class ClipboardManager {
     private static final Logger logger = LoggerFactory.getLogger(ClipboardManager.class);
-    private static final int MAX_HISTORY_SIZE = 100;
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 8;
+    private static final int CAPTURE_QUEUE_CAPACITY = 64;
+    private static final int CAPTURE_BATCH = 16;
+    private static final int CHANGE_QUEUE_CAPACITY = 1024;
+    private static final int PERSIST_BATCH = 256;
+    private static final long STAGE_DRAIN_TIMEOUT_MILLIS = 5000;
+    private static final long FILE_LIST_HASH_SEED = 0x46494C45534C5354L; // "FILESLST"
+    private static final int INDEX_READ_CHUNK = 8192;
+    private static final int MIN_SPILL_BYTES = 4096;
     
-    private final List<String> clipboardHistory;
+    /**
+     * Told when a capture submitted with {@link #submitCapture(CaptureCallback)} has been stored.
+     */
+    public interface CaptureCallback {
+        void captured(boolean changed);
+    }
+    
+    private final HistoryRingBuffer<HistoryEntry> clipboardHistory;
+    private final Map<Long, HistoryEntry> entriesByHash = new HashMap<>();
+    private final HistoryStorage storage;
+    private final SearchIndex searchIndex;
+    private final FrecencyRanking ranking;
+    private final ClipboardMetrics metrics;
     private final Clipboard systemClipboard;
+    private final AtomicLong nextEntryId = new AtomicLong(1);
+    private final StampedLock lock = new StampedLock();
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private final List<HistoryChange> changes = new ArrayList<>();
+    private final PipelineStage<CaptureTask> normalizeStage;
+    private final PipelineStage<CaptureTask> storeStage;
+    private final PipelineStage<HistoryChange> indexStage;
+    private final PipelineStage<HistoryChange> persistStage;
+    private final int segmentSize;
+    private final MemoryPressureMonitor memoryMonitor;
+    private final EventLog eventLog;
+    private HistoryLog historyLog;
+    private volatile HistoryLog spillLog;
+    private Path spillDirectory;
+    private volatile ClipboardOwner clipboardOwner;
+    private final ClipboardOwner ownership = this::ownershipLost;
+    private volatile Transferable ownedContents;
+    private volatile SoftReference<Object> lastRead = new SoftReference<>(null);
+    private volatile long lastImageSample;
     
     public ClipboardManager() {
-        this.clipboardHistory = new ArrayList<>();
-        this.systemClipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+        this(ClipboardConfig.load());
+    }
+    
+    public ClipboardManager(ClipboardConfig config) {
+        this(Toolkit.getDefaultToolkit().getSystemClipboard(), config);
+    }
+    
+    /**
+     * Creates a manager capturing from the given clipboard instead of the system clipboard,
+     * e.g. an in-memory clipboard for benchmarks on headless machines.
+     * @param clipboard the clipboard to capture from and write to
+     * @param config the configuration
+     */
+    public ClipboardManager(Clipboard clipboard, ClipboardConfig config) {
+        this.clipboardHistory = new HistoryRingBuffer<>(config.getHistoryCapacity());
+        this.storage = new HistoryStorage(config.getCompressionThreshold(), config.getHistoryByteBudget());
+        this.searchIndex = new SearchIndex(config.getSearchMaxIndexedChars());
+        this.ranking = config.isFrecencyOrder()
+            ? new FrecencyRanking(TimeUnit.HOURS.toNanos(config.getFrecencyHalfLife()))
+            : null;
+        this.systemClipboard = clipboard;
+        this.normalizeStage = new PipelineStage<>("normalize", CAPTURE_QUEUE_CAPACITY, CAPTURE_BATCH, this::normalizeBatch);
+        this.storeStage = new PipelineStage<>("store", CAPTURE_QUEUE_CAPACITY, CAPTURE_BATCH, this::storeBatch);
+        this.indexStage = new PipelineStage<>("index", CHANGE_QUEUE_CAPACITY, CAPTURE_BATCH, this::indexBatch);
+        this.persistStage = new PipelineStage<>("persist", CHANGE_QUEUE_CAPACITY, PERSIST_BATCH, this::persistBatch);
+        this.metrics = new ClipboardMetrics(this::getHistorySize, storage::getStoredBytes,
+            List.of(normalizeStage, storeStage, indexStage, persistStage));
+        this.segmentSize = config.getHistorySegmentSize();
+        this.eventLog = EventLog.open(config);
         
-        // Initialize with empty clipboard
-        clearSystemClipboard();
+        if (config.isHistoryPersistent()) {
+            openHistoryLog(config.getHistoryDirectory(), segmentSize);
+        }
+        this.memoryMonitor = config.getSpillThreshold() > 0
+            ? new MemoryPressureMonitor(this::relieveMemoryPressure, config.getSpillThreshold())
+            : null;
+        if (memoryMonitor != null) {
+            memoryMonitor.start();
+        }
     }
     
     /**
-     * Adds the current clipboard content to history.
-     * Prevents duplicate consecutive entries.
+     * Opens the persistent history log and restores its entries without reading their bodies.
+     * Persistence is disabled if the log cannot be opened.
      */
-    public void captureClipboard() {
+    private void openHistoryLog(Path directory, int segmentSize) {
         try {
-            if (!systemClipboard.isDataFlavorAvailable(DataFlavor.stringFlavor)) {
-                logger.debug("Clipboard does not contain text data");
-                return;
+            historyLog = HistoryLog.open(directory, segmentSize);
+            nextEntryId.set(historyLog.nextId());
+            long stamp = lock.writeLock();
+            try {
+                for (HistoryLog.Record record : historyLog.getLiveRecords()) {
+                    HistoryEntry older = entriesByHash.get(record.getHash());
+                    if (older != null) {
+                        clipboardHistory.remove(older);
+                        evict(older);
+                    }
+                    HistoryEntry restored = HistoryEntry.restored(record);
+                    store(restored);
+                    searchIndex.reserve(restored);
+                }
+            } finally {
+                unlockAndPublish(stamp);
             }
-            
-            Object data = systemClipboard.getData(DataFlavor.stringFlavor);
-            if (data instanceof String) {
-                String content = ((String) data).trim();
-                if (!content.isEmpty() && !isDuplicate(content)) {
-                    clipboardHistory.add(content);
-                    trimHistoryIfNeeded();
-                    logger.debug("Captured clipboard content: {} characters", content.length());
-                } else if (content.isEmpty()) {
-                    logger.debug("Skipped empty clipboard content");
-                } else {
-                    logger.debug("Skipped duplicate clipboard content");
+            logger.info("Restored {} clipboard history entries from {}", clipboardHistory.size(), directory);
+            startSearchBackfill();
+        } catch (IOException e) {
+            logger.error("Failed to open clipboard history in {}, history will not be persisted", directory, e);
+            historyLog = null;
+        }
+    }
+    
+    /**
+     * Indexes the text of restored entries on a background thread, so startup does not read
+     * every entry body. Only the indexed prefix of each entry is read, so huge entries are not
+     * loaded. Restored entries only show up in search results once indexed.
+     */
+    private void startSearchBackfill() {
+        List<HistoryEntry> restored = snapshot();
+        if (restored.isEmpty()) {
+            return;
+        }
+        Thread backfill = new Thread(() -> {
+            long start = System.nanoTime();
+            for (HistoryEntry entry : restored) {
+                if (entry.isLinked()) {
+                    searchIndex.index(entry, indexedText(entry));
+                }
+            }
+            logger.info("Indexed {} restored history entries for search in {} ms", restored.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        }, "search-index-backfill");
+        backfill.setDaemon(true);
+        backfill.setPriority(Thread.MIN_PRIORITY);
+        backfill.start();
+    }
+    
+    private List<HistoryEntry> snapshot() {
+        long stamp = lock.readLock();
+        try {
+            return new ArrayList<>(clipboardHistory.asList());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Adds the current clipboard content to history, running the read, normalize and store
+     * stages on the calling thread. Indexing and persistence still happen on their stages.
+     * Content already in history moves its existing entry to the front.
+     * @return true if history changed
+     */
+    public boolean captureClipboard() {
+        CaptureTask task = readClipboard(null, false);
+        return task != null && normalize(task) && storeCapture(task);
+    }
+    
+    /**
+     * Adds text to history as if it had been copied, without touching the system clipboard.
+     * Text already in history moves its existing entry to the front.
+     * @param text the text to add
+     * @return true if history changed
+     */
+    public boolean addToHistory(String text) {
+        CaptureTask task = new CaptureTask(text, System.nanoTime(), null);
+        return normalize(task) && storeCapture(task);
+    }
+    
+    /**
+     * Exports history to a newline-delimited JSON file, oldest entry first. Entry bodies are
+     * streamed from storage one at a time; only references to the entries are copied.
+     * @param file the file to write; it is replaced once the export is complete
+     * @param gzip whether to gzip-compress the file
+     * @return the number of entries exported
+     * @throws IOException if the file cannot be written
+     */
+    public long exportHistory(Path file, boolean gzip) throws IOException {
+        long start = System.nanoTime();
+        long exported = HistoryArchive.export(this, snapshot(), file, gzip);
+        logger.info("Exported {} history entries to {} in {} ms", exported, file,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return exported;
+    }
+    
+    /**
+     * Imports a file written by {@link #exportHistory(Path, boolean)}, gzip-compressed or not.
+     * Entries are added in file order as if they had been copied, so content already in history
+     * moves to the front instead of being stored twice.
+     * @param file the file to read
+     * @return the number of entries read and how many changed history
+     * @throws IOException if the file cannot be read or is malformed; entries before the
+     *                     malformed line have been imported
+     */
+    public HistoryArchive.Summary importHistory(Path file) throws IOException {
+        long start = System.nanoTime();
+        HistoryArchive.Summary summary = HistoryArchive.importFrom(file, this::importBatch);
+        logger.info("Imported {} history entries from {} ({} changed history) in {} ms", summary.getEntries(), file,
+            summary.getChanged(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return summary;
+    }
+    
+    /**
+     * Adds a batch of imported entries with one write lock, deduplicating by content hash like
+     * the store stage. Which entries are new is looked up under one read lock, and they are
+     * created, and images encoded, before the write lock is taken.
+     * @return how many entries changed history
+     */
+    private int importBatch(List<HistoryArchive.Item> items) {
+        List<CaptureTask> tasks = new ArrayList<>(items.size());
+        for (HistoryArchive.Item item : items) {
+            CaptureTask task = new CaptureTask(item.text, System.nanoTime(), null);
+            task.contentType = item.contentType;
+            task.image = item.image;
+            if (normalize(task)) {
+                tasks.add(task);
+            }
+        }
+        // entriesByHash is a plain HashMap, which an optimistic read could see mid-resize
+        boolean[] known = new boolean[tasks.size()];
+        long readStamp = lock.readLock();
+        try {
+            for (int i = 0; i < known.length; i++) {
+                known[i] = entriesByHash.containsKey(tasks.get(i).hash);
+            }
+        } finally {
+            lock.unlockRead(readStamp);
+        }
+        HistoryEntry[] created = new HistoryEntry[tasks.size()];
+        for (int i = 0; i < created.length; i++) {
+            if (!known[i]) {
+                created[i] = createEntry(tasks.get(i));
+            }
+        }
+        int changed = 0;
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < created.length; i++) {
+                CaptureTask task = tasks.get(i);
+                HistoryEntry existing = entriesByHash.get(task.hash);
+                if (existing != null) {
+                    changed += moveToFront(existing, task.content, false) ? 1 : 0;
+                    continue;
+                }
+                // Entries that existed before the lock was taken may have been evicted since
+                HistoryEntry entry = created[i] != null ? created[i] : createEntry(task);
+                if (entry != null) {
+                    store(entry);
+                    changes.add(new HistoryChange(HistoryChange.Kind.ADDED, entry, task.content));
+                    changed++;
                 }
             }
+        } finally {
+            unlockAndPublish(stamp);
+        }
+        return changed;
+    }
+    
+    /**
+     * Reads the clipboard on the calling thread and queues the content for the normalize,
+     * store, index and persist stages. Blocks while the normalize stage is full.
+     * @param callback told on the store stage whether history changed
+     * @return true if content was queued; the callback is only called in that case
+     */
+    public boolean submitCapture(CaptureCallback callback) {
+        return submitCapture(callback, false);
+    }
+    
+    /**
+     * Reads the clipboard like {@link #submitCapture(CaptureCallback)}, optionally skipping
+     * content that has not changed since the last read, e.g. for polls. The checks run before
+     * the content is normalized and hashed: while an entry this manager put on the clipboard is
+     * still there, nothing is read at all; otherwise text and file lists are compared with the
+     * last read, and images by their size and a grid of sampled pixels.
+     * @param callback told on the store stage whether history changed
+     * @param onlyIfChanged true to skip content equal to the last read
+     * @return true if content was queued; the callback is only called in that case
+     */
+    public boolean submitCapture(CaptureCallback callback, boolean onlyIfChanged) {
+        CaptureTask task = readClipboard(callback, onlyIfChanged);
+        if (task == null) {
+            return false;
+        }
+        try {
+            normalizeStage.submit(task);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /**
+     * Read stage: takes text, a file list or an image off the clipboard. Copied files usually
+     * come with their names as text too, so the file list is preferred; text is preferred over
+     * an image, since applications often add a rendering of copied text as an image. An entry
+     * this manager put back on the clipboard is recognized without reading its text.
+     * @param onlyIfChanged true to return null for content equal to the last read
+     * @return the capture, or null if the clipboard holds none of these or nothing changed
+     */
+    private CaptureTask readClipboard(CaptureCallback callback, boolean onlyIfChanged) {
+        try {
+            long readStart = System.nanoTime();
+            if (onlyIfChanged && ownedContents != null) {
+                // What this manager put on the clipboard is still there
+                return null;
+            }
+            CaptureTask task = null;
+            HistoryEntry pasted = ownedContents != null ? pastedEntry() : null;
+            if (pasted != null) {
+                task = new CaptureTask(null, System.nanoTime(), callback);
+                task.contentType = pasted.getContentType();
+                task.pasted = pasted;
+            } else if (systemClipboard.isDataFlavorAvailable(DataFlavor.javaFileListFlavor)) {
+                Object data = systemClipboard.getData(DataFlavor.javaFileListFlavor);
+                if (!sameAsLastRead(data) || !onlyIfChanged) {
+                    task = fileListTask(data, callback);
+                }
+            } else if (systemClipboard.isDataFlavorAvailable(DataFlavor.stringFlavor)) {
+                Object data = systemClipboard.getData(DataFlavor.stringFlavor);
+                if (data instanceof String && (!sameAsLastRead(data) || !onlyIfChanged)) {
+                    task = new CaptureTask((String) data, System.nanoTime(), callback);
+                }
+            } else if (systemClipboard.isDataFlavorAvailable(DataFlavor.imageFlavor)) {
+                Object data = systemClipboard.getData(DataFlavor.imageFlavor);
+                if (!sameAsLastRead(data) || !onlyIfChanged) {
+                    task = imageTask(data, callback);
+                }
+            } else {
+                logger.debug("Clipboard does not contain text, files or an image");
+            }
+            if (task != null) {
+                metrics.recordClipboardRead(task.readAt - readStart);
+            }
+            return task;
         } catch (UnsupportedFlavorException e) {
-            logger.debug("Clipboard does not contain text data");
+            logger.debug("Clipboard content changed while it was read");
         } catch (IOException e) {
             logger.error("Failed to read clipboard content", e);
         } catch (IllegalStateException e) {
             logger.warn("Clipboard is currently unavailable", e);
         }
+        return null;
+    }
+    
+    /**
+     * Remembers data read off the clipboard and tells whether it equals the data read before.
+     * Comparing text or file lists is much cheaper than normalizing and hashing them. Images are
+     * compared by identity, or by their size and a grid of sampled pixels when they are buffered
+     * images, so an unchanged image is neither converted nor hashed; a change that touches none
+     * of the sampled pixels is not seen. The last data is softly referenced, so it never keeps
+     * memory the JVM needs.
+     */
+    private boolean sameAsLastRead(Object data) {
+        Object previous = lastRead.get();
+        long sample = data instanceof BufferedImage ? ImageCodec.sample((BufferedImage) data) : 0;
+        boolean same;
+        if (previous == null || previous == data) {
+            same = previous == data;
+        } else if (data instanceof Image) {
+            same = data instanceof BufferedImage && previous instanceof BufferedImage && sample == lastImageSample;
+        } else {
+            same = data.equals(previous);
+        }
+        lastRead = new SoftReference<>(data);
+        lastImageSample = sample;
+        return same;
+    }
+    
+    /**
+     * Forgets what this manager put on the clipboard once another application replaces it, and
+     * tells the configured owner.
+     */
+    private void ownershipLost(Clipboard clipboard, Transferable contents) {
+        if (ownedContents == contents) {
+            ownedContents = null;
+        }
+        ClipboardOwner owner = clipboardOwner;
+        if (owner != null) {
+            owner.lostOwnership(clipboard, contents);
+        }
+    }
+    
+    /**
+     * Returns the history entry this manager put back on the clipboard, if it is still there.
+     * Capturing it only moves the entry to the front, so its text is never read back.
+     */
+    private HistoryEntry pastedEntry() {
+        Transferable contents = systemClipboard.getContents(null);
+        return contents instanceof HistoryTransferable ? ((HistoryTransferable) contents).getEntry(this) : null;
+    }
+    
+    private static CaptureTask fileListTask(Object data, CaptureCallback callback) {
+        if (!(data instanceof List)) {
+            return null;
+        }
+        StringBuilder paths = new StringBuilder();
+        for (Object file : (List<?>) data) {
+            if (file instanceof File) {
+                paths.append(paths.length() == 0 ? "" : "\n").append(((File) file).getAbsolutePath());
+            }
+        }
+        CaptureTask task = new CaptureTask(paths.toString(), System.nanoTime(), callback);
+        task.contentType = HistoryEntry.ContentType.FILE_LIST;
+        return task;
+    }
+    
+    private static CaptureTask imageTask(Object data, CaptureCallback callback) {
+        if (!(data instanceof Image)) {
+            return null;
+        }
+        BufferedImage image = ImageCodec.toArgb((Image) data);
+        if (image == null) {
+            logger.debug("Skipped clipboard image of unknown size");
+            return null;
+        }
+        CaptureTask task = new CaptureTask(ImageCodec.describe(image.getWidth(), image.getHeight()), System.nanoTime(), callback);
+        task.contentType = HistoryEntry.ContentType.IMAGE;
+        task.image = image;
+        return task;
+    }
+    
+    /**
+     * Normalize stage: trims text and computes the content hash. Images are hashed by their
+     * pixels, so an image copied again is recognized before it is encoded.
+     * @return false if nothing is left to capture
+     */
+    private boolean normalize(CaptureTask task) {
+        if (task.pasted != null) {
+            task.hash = task.pasted.getHash();
+            return true;
+        }
+        if (task.contentType == HistoryEntry.ContentType.IMAGE) {
+            task.hash = ContentHash.ofPixels(task.image.getWidth(), ImageCodec.pixels(task.image));
+            return true;
+        }
+        task.content = task.content.trim();
+        if (task.content.isEmpty()) {
+            logger.debug("Skipped empty clipboard content");
+            return false;
+        }
+        task.hash = ContentHash.of(task.content);
+        if (task.contentType == HistoryEntry.ContentType.FILE_LIST) {
+            task.hash ^= FILE_LIST_HASH_SEED;
+        }
+        return true;
+    }
+    
+    private void normalizeBatch(List<CaptureTask> batch) {
+        for (CaptureTask task : batch) {
+            if (!normalize(task)) {
+                task.complete(false);
+                continue;
+            }
+            try {
+                storeStage.submit(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private void storeBatch(List<CaptureTask> batch) {
+        for (CaptureTask task : batch) {
+            task.complete(storeCapture(task));
+        }
+    }
+    
+    /**
+     * Store stage: if an entry with the same content hash exists it is moved to the front;
+     * otherwise a new entry is stored. The matching index and log updates are queued.
+     * @param task the normalized capture
+     * @return true if history changed
+     */
+    private boolean storeCapture(CaptureTask task) {
+        String content = task.content;
+        long hash = task.hash;
+        long stamp = lock.writeLock();
+        try {
+            HistoryEntry existing = entriesByHash.get(hash);
+            if (existing != null) {
+                return moveToFront(existing, content, task.pasted == null);
+            }
+        } finally {
+            unlockAndPublish(stamp);
+        }
+        if (task.pasted != null) {
+            logger.debug("Pasted history entry {} is no longer in history", task.pasted.getId());
+            return false;
+        }
+        HistoryEntry entry = createEntry(task);
+        if (entry == null) {
+            return false;
+        }
+        stamp = lock.writeLock();
+        try {
+            HistoryEntry existing = entriesByHash.get(hash);
+            if (existing != null) {
+                return moveToFront(existing, content, true);
+            }
+            store(entry);
+            changes.add(new HistoryChange(HistoryChange.Kind.ADDED, entry, content));
+        } finally {
+            unlockAndPublish(stamp);
+        }
+        metrics.countCapture();
+        metrics.recordCaptureToStore(System.nanoTime() - task.readAt);
+        eventLog.record(EventLog.Event.CAPTURED, task.contentType, entry.getId(), entry.getStoredBytes());
+        return true;
+    }
+    
+    /**
+     * Creates the entry for new content; images are encoded here, once they are known to be new.
+     * @return the entry, or null if an image could not be encoded
+     */
+    private HistoryEntry createEntry(CaptureTask task) {
+        long id = nextEntryId.getAndIncrement();
+        switch (task.contentType) {
+            case IMAGE:
+                try {
+                    return storage.createImageEntry(id, task.image, task.hash);
+                } catch (IOException e) {
+                    logger.error("Failed to encode clipboard image", e);
+                    return null;
+                }
+            case FILE_LIST:
+                return storage.createFileListEntry(id, task.content, task.hash);
+            default:
+                return storage.createEntry(id, task.content, task.hash);
+        }
+    }
+    
+    /**
+     * Moves an existing entry to the most recent position.
+     * @param entry the entry matching the captured content
+     * @param content the captured content
+     * @param copied true if the content was copied again, which counts as a use for frecency;
+     *               false if the entry was pasted from history and its use is already recorded
+     * @return true if the entry moved, false if it already was the most recent
+     */
+    private boolean moveToFront(HistoryEntry entry, String content, boolean copied) {
+        if (clipboardHistory.peekLast() == entry) {
+            // Polls and repeated change signals capture the same clipboard again; not a use
+            metrics.countDuplicate();
+            eventLog.record(EventLog.Event.DUPLICATE_SKIPPED, entry.getId());
+            return false;
+        }
+        if (copied && ranking != null) {
+            ranking.recordUse(entry);
+        }
+        clipboardHistory.remove(entry);
+        clipboardHistory.add(entry);
+        changes.add(new HistoryChange(HistoryChange.Kind.MOVED, entry, content));
+        metrics.countMovedToFront();
+        eventLog.record(EventLog.Event.MOVED_TO_FRONT, entry.getId());
+        return true;
+    }
+    
+    /**
+     * Adds an entry to the ring buffer and evicts the oldest entries until history is back
+     * within its entry and byte limits. The newest entry is always kept.
+     */
+    private void store(HistoryEntry entry) {
+        storage.onAdded(entry);
+        entriesByHash.put(entry.getHash(), entry);
+        if (ranking != null) {
+            ranking.add(entry);
+        }
+        HistoryEntry evicted = clipboardHistory.add(entry);
+        if (evicted != null) {
+            evict(evicted);
+        }
+        while (storage.isOverBudget() && clipboardHistory.size() > 1) {
+            evict(clipboardHistory.removeFirst());
+        }
+    }
+    
+    private void evict(HistoryEntry entry) {
+        storage.onRemoved(entry);
+        entriesByHash.remove(entry.getHash(), entry);
+        if (ranking != null) {
+            ranking.remove(entry);
+        }
+        changes.add(new HistoryChange(HistoryChange.Kind.REMOVED, entry, null));
+        metrics.countEviction();
+        eventLog.record(EventLog.Event.EVICTED, entry.getId(), storage.getStoredBytes());
+    }
+    
+    /**
+     * Releases the write lock and queues the changes made under it for the index and persist
+     * stages. The publish lock is taken before the write lock is released, so changes reach
+     * the stages in the order they were made, while a full stage queue only holds up other
+     * writers and never readers.
+     */
+    private void unlockAndPublish(long stamp) {
+        if (changes.isEmpty()) {
+            lock.unlockWrite(stamp);
+            return;
+        }
+        List<HistoryChange> published = new ArrayList<>(changes);
+        changes.clear();
+        publishLock.lock();
+        lock.unlockWrite(stamp);
+        try {
+            for (HistoryChange change : published) {
+                indexStage.submit(change);
+                if (historyLog != null || spillLog != null) {
+                    persistStage.submit(change);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while queueing history changes, search and persisted history may be stale");
+        } finally {
+            publishLock.unlock();
+        }
+    }
+    
+    /**
+     * Index stage: applies history changes to the search index.
+     */
+    private void indexBatch(List<HistoryChange> batch) {
+        for (HistoryChange change : batch) {
+            switch (change.kind) {
+                case ADDED:
+                    searchIndex.add(change.entry, change.content);
+                    break;
+                case MOVED:
+                    searchIndex.remove(change.entry);
+                    searchIndex.add(change.entry, change.content != null ? change.content : indexedText(change.entry));
+                    break;
+                case REMOVED:
+                    searchIndex.remove(change.entry);
+                    break;
+                case CLEARED:
+                    searchIndex.clear();
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * Reads the part of an entry the search index covers, for restored entries and for entries
+     * moved without their text being captured again. The prefix is streamed, so a huge entry is
+     * never loaded as a whole.
+     */
+    private String indexedText(HistoryEntry entry) {
+        String text = entry.getCachedText();
+        return text != null ? text : getTextPrefix(entry, searchIndex.getMaxIndexedChars());
+    }
+    
+    /**
+     * Returns the leading characters of an entry. Text that is not on the heap is streamed from
+     * storage, so only the prefix is inflated or read from disk.
+     * @param entry the entry
+     * @param maxChars the most characters to return
+     * @return the prefix, or as much of it as could be read
+     */
+    public String getTextPrefix(HistoryEntry entry, int maxChars) {
+        String text = entry.getCachedText();
+        if (text != null) {
+            return text.length() <= maxChars ? text : text.substring(0, maxChars);
+        }
+        StringBuilder prefix = new StringBuilder(Math.min(maxChars, INDEX_READ_CHUNK));
+        char[] chunk = new char[INDEX_READ_CHUNK];
+        try (Reader reader = new InputStreamReader(openText(entry), StandardCharsets.UTF_8)) {
+            int read;
+            while (prefix.length() < maxChars
+                && (read = reader.read(chunk, 0, Math.min(chunk.length, maxChars - prefix.length()))) > 0) {
+                prefix.append(chunk, 0, read);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read history entry {}", entry.getId(), e);
+        }
+        return prefix.toString();
+    }
+    
+    /**
+     * Persist stage: applies history changes to the history log, writing the index records
+     * of the whole batch together. When history is not persisted, only removals are applied,
+     * to the spill log.
+     */
+    private void persistBatch(List<HistoryChange> batch) {
+        HistoryLog log = bodyLog();
+        log.beginBatch();
+        try {
+            for (HistoryChange change : batch) {
+                try {
+                    persist(log, change);
+                } catch (IOException e) {
+                    logger.error("Failed to persist clipboard history change ({})", change.kind, e);
+                }
+            }
+        } finally {
+            try {
+                log.endBatch();
+            } catch (IOException e) {
+                logger.error("Failed to write clipboard history index", e);
+            }
+        }
+    }
+    
+    private void persist(HistoryLog log, HistoryChange change) throws IOException {
+        HistoryEntry entry = change.entry;
+        if (log != historyLog && change.kind != HistoryChange.Kind.REMOVED && change.kind != HistoryChange.Kind.CLEARED) {
+            // The spill log only holds bodies spilled under memory pressure
+            return;
+        }
+        switch (change.kind) {
+            case ADDED:
+                byte[] body = storage.logBody(entry, change.content);
+                entry.setRecord(log.append(entry.getId(), storage.logKind(entry), entry.getHash(), body));
+                break;
+            case MOVED:
+                if (entry.getRecord() != null) {
+                    log.moveToEnd(entry.getRecord());
+                }
+                break;
+            case REMOVED:
+                if (entry.getRecord() != null) {
+                    log.remove(entry.getRecord());
+                }
+                break;
+            case CLEARED:
+                log.clear();
+                break;
+        }
+    }
+    
+    /**
+     * Returns the log that bodies of disk-tier entries are read from: the history log, or the
+     * spill log when history is not persisted.
+     */
+    private HistoryLog bodyLog() {
+        return historyLog != null ? historyLog : spillLog;
+    }
+    
+    /**
+     * Spills entry bodies from the heap after the JVM reported memory pressure: at least as many
+     * bytes as the heap is over its threshold, and no less than a quarter of history's heap
+     * bytes, so that one notification buys some headroom.
+     */
+    private void relieveMemoryPressure() {
+        long heapBefore = storage.getHeapBytes();
+        long target = Math.max(memoryMonitor.getBytesOverThreshold(), heapBefore / 4);
+        long released = spillToDisk(target);
+        logger.info("Memory pressure: spilled {} of {} bytes of history from the heap (target {})",
+            released, heapBefore, target);
+    }
+    
+    /**
+     * Drops entry bodies from the heap, largest and coldest first, until the target is reached,
+     * so they are read back from disk when accessed. Entries are ranked by their heap size times
+     * their distance from the newest entry, divided in frecency order by one plus their score.
+     * Entries persisted in the history log are spilled without writing anything; when history
+     * is not persisted, their bodies are first written to a temporary spill log. The newest
+     * entry and entries smaller than {@value #MIN_SPILL_BYTES} bytes stay in memory, as do
+     * entries not yet written by the persist stage.
+     * @param targetBytes how many heap bytes to release
+     * @return the heap bytes released by dropping bodies
+     */
+    public long spillToDisk(long targetBytes) {
+        spillLock.lock();
+        try {
+            List<HistoryEntry> entries = snapshot();
+            int newest = entries.size() - 1;
+            List<SpillCandidate> candidates = new ArrayList<>();
+            for (int i = 0; i < newest; i++) {
+                HistoryEntry entry = entries.get(i);
+                long footprint = storage.getHeapFootprint(entry);
+                if (footprint >= MIN_SPILL_BYTES) {
+                    double coldness = newest - i;
+                    if (ranking != null) {
+                        coldness /= 1 + ranking.getScore(entry);
+                    }
+                    candidates.add(new SpillCandidate(entry, footprint * coldness));
+                }
+            }
+            candidates.sort((a, b) -> Double.compare(b.priority, a.priority));
+            long released = 0;
+            for (SpillCandidate candidate : candidates) {
+                if (released >= targetBytes) {
+                    break;
+                }
+                released += spill(candidate.entry);
+            }
+            return released;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+    
+    private long spill(HistoryEntry entry) {
+        if (storage.getHeapFootprint(entry) < MIN_SPILL_BYTES) {
+            return 0;
+        }
+        HistoryLog.Record spilled = null;
+        if (entry.getRecord() == null) {
+            if (historyLog != null) {
+                return 0;
+            }
+            try {
+                spilled = openSpillLog().append(entry.getId(), storage.logKind(entry), entry.getHash(),
+                    storage.logBody(entry, entry.getCachedText()));
+            } catch (IOException e) {
+                logger.error("Failed to spill history entry {} to disk", entry.getId(), e);
+                return 0;
+            }
+        }
+        long released = 0;
+        long stamp = lock.writeLock();
+        try {
+            if (entry.isLinked()) {
+                if (spilled != null && entry.getRecord() == null) {
+                    entry.setRecord(spilled);
+                    spilled = null;
+                }
+                released = storage.spill(entry);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (spilled != null) {
+            try {
+                spillLog.remove(spilled);
+            } catch (IOException e) {
+                logger.warn("Failed to discard spilled body of evicted entry {}", entry.getId(), e);
+            }
+        }
+        return released;
+    }
+    
+    private synchronized HistoryLog openSpillLog() throws IOException {
+        if (spillLog == null) {
+            spillDirectory = Files.createTempDirectory("clipboard-spill");
+            spillLog = HistoryLog.open(spillDirectory, segmentSize);
+            logger.info("Spilling clipboard history bodies to {}", spillDirectory);
+        }
+        return spillLog;
+    }
+    
+    private synchronized void closeSpillLog() {
+        if (spillLog == null) {
+            return;
+        }
+        try {
+            spillLog.close();
+            try (Stream<Path> paths = Files.walk(spillDirectory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete clipboard spill directory {}", spillDirectory, e);
+        }
+        spillLog = null;
+    }
+    
+    /**
+     * Returns the text of an entry, inflating it or reading it from the history log as needed.
+     * @param entry the history entry
+     * @return the entry text, or empty string if it cannot be read
+     */
+    public String getText(HistoryEntry entry) {
+        try {
+            return storage.load(entry, bodyLog());
+        } catch (IOException e) {
+            logger.error("Failed to read history entry {}", entry.getId(), e);
+            return "";
+        }
     }
     
     /**
-     * Checks if the content is a duplicate of the most recent history item.
-     * @param content the content to check
-     * @return true if it's a duplicate, false otherwise
+     * Returns the UTF-8 body of a history entry for sending to another process, without
+     * decoding it into a string.
+     * @param entry the entry
+     * @return the body
+     * @throws IOException if the body cannot be read from the history log
      */
-    private boolean isDuplicate(String content) {
-        return !clipboardHistory.isEmpty() 
-            && clipboardHistory.get(clipboardHistory.size() - 1).equals(content);
+    public EntryBody getBody(HistoryEntry entry) throws IOException {
+        return storage.loadBody(entry, bodyLog());
     }
     
     /**
-     * Trims history if it exceeds the maximum size.
+     * Opens the UTF-8 text of an entry as a stream, without loading it as a whole.
+     * @param entry the entry
+     * @return the stream, which the caller closes
+     * @throws IOException if the entry has no stored body
      */
-    private void trimHistoryIfNeeded() {
-        if (clipboardHistory.size() > MAX_HISTORY_SIZE) {
-            clipboardHistory.remove(0);
-            logger.debug("Trimmed clipboard history to {} items", MAX_HISTORY_SIZE);
+    public InputStream openText(HistoryEntry entry) throws IOException {
+        return storage.openStream(entry, bodyLog());
+    }
+    
+    /**
+     * Returns the PNG body of an image entry without decoding it.
+     * @param entry the image entry
+     * @return the PNG bytes, or null if the entry is not an image or cannot be read
+     */
+    public byte[] getImageData(HistoryEntry entry) {
+        try {
+            return storage.loadImage(entry, bodyLog());
+        } catch (IOException e) {
+            logger.error("Failed to read history image {}", entry.getId(), e);
+            return null;
         }
     }
     
+    /**
+     * Returns the position of an entry counted from the most recent end.
+     * @param entry the entry
+     * @return 1 for the most recent entry, or 0 if the entry is no longer in history
+     */
+    public int getOffsetFromEnd(HistoryEntry entry) {
+        return read(ignored -> {
+            int index = clipboardHistory.indexOf(entry);
+            return index < 0 ? 0 : clipboardHistory.size() - index;
+        }, 0);
+    }
+    
     /**
      * Retrieves a clipboard item from history at the specified offset from the end.
      * @param offsetFromEnd 1 for most recent, 2 for second most recent, etc.
      * @return the clipboard content, or empty string if not found
      */
     public String getHistoryItem(int offsetFromEnd) {
+        HistoryEntry entry = getHistoryEntry(offsetFromEnd);
+        return entry == null ? "" : getText(entry);
+    }
+    
+    /**
+     * Returns the history entry at the specified offset from the end without loading its text.
+     * @param offsetFromEnd 1 for most recent, 2 for second most recent, etc.
+     * @return the entry, or null if not found
+     */
+    public HistoryEntry getHistoryEntry(int offsetFromEnd) {
+        return read(this::entryFromEnd, offsetFromEnd);
+    }
+    
+    /**
+     * Returns the entry at a position in the order Win+Shift cycles through: most recent first,
+     * or highest frecency first when frecency order is configured.
+     * @param position 1 for the first entry, 2 for the second, etc.
+     * @return the entry, or null if not found
+     */
+    public HistoryEntry getCycleEntry(int position) {
+        return ranking != null ? ranking.get(position) : getHistoryEntry(position);
+    }
+    
+    /**
+     * Records that an entry was picked from history to be pasted. In frecency order this
+     * moves the entry up the cycle order.
+     * @param entry the picked entry
+     */
+    public void recordSelection(HistoryEntry entry) {
+        if (ranking != null) {
+            ranking.recordUse(entry);
+        }
+    }
+    
+    /**
+     * Returns the frecency ranking Win+Shift cycles through.
+     * @return the ranking, or null if history is cycled most recent first
+     */
+    public FrecencyRanking getRanking() {
+        return ranking;
+    }
+    
+    private HistoryEntry entryFromEnd(int offsetFromEnd) {
         int size = clipboardHistory.size();
         if (size == 0 || offsetFromEnd <= 0 || offsetFromEnd > size) {
-            return "";
+            return null;
+        }
+        return clipboardHistory.getFromEnd(offsetFromEnd);
+    }
+    
+    /**
+     * Runs a history lookup without locking. The lookup may observe a write in progress,
+     * in which case it can return garbage or throw; both are discarded when the stamp fails
+     * to validate, and the lookup is retried. Only after repeated interference does it take
+     * the read lock.
+     */
+    private <T> T read(IntFunction<T> lookup, int argument) {
+        for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    T result = lookup.apply(argument);
+                    if (lock.validate(stamp)) {
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    if (lock.validate(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+            Thread.onSpinWait();
         }
-        return clipboardHistory.get(size - offsetFromEnd);
+        long stamp = lock.readLock();
+        try {
+            return lookup.apply(argument);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Finds the most recent history entries containing the query, ignoring case.
+     * Candidates are checked against the part of their text the index covers, so entries are
+     * only inflated or read from disk up to that prefix. Queries too short for the index only
+     * scan entries whose text is in memory.
+     * @param query the text to look for
+     * @param limit the maximum number of results
+     * @return matching entries, most recent first
+     */
+    public List<HistoryEntry> search(String query, int limit) {
+        return searchIndex.search(query, limit, this::indexedText, HistoryEntry::getCachedText);
     }
     
     /**
@@ -107,14 +1091,48 @@ public class ClipboardManager {
             logger.debug("Skipping empty clipboard set operation");
             return;
         }
-        
+        setContents(new StringSelection(content), content.length() + " characters");
+    }
+    
+    /**
+     * Puts a history entry back on the system clipboard in the form it was copied in: text,
+     * a file list, or an image. Nothing is loaded until an application pastes: text is offered
+     * by a {@link HistoryTransferable} that streams it from storage, and images are decoded
+     * only when asked for.
+     * @param entry the history entry
+     */
+    public void setSystemClipboard(HistoryEntry entry) {
+        switch (entry.getContentType()) {
+            case IMAGE:
+                byte[] png = getImageData(entry);
+                if (png != null) {
+                    setContents(new ImageSelection(png), ImageCodec.describe(png));
+                }
+                break;
+            case FILE_LIST:
+                String paths = getText(entry);
+                if (!paths.isEmpty()) {
+                    setContents(new FileListSelection(paths), paths.split("\n").length + " files");
+                }
+                break;
+            default:
+                setContents(new HistoryTransferable(this, entry), "history entry " + entry.getId());
+                break;
+        }
+    }
+    
+    private void setContents(Transferable contents, String description) {
         try {
-            StringSelection selection = new StringSelection(content);
-            systemClipboard.setContents(selection, null);
-            logger.debug("Set system clipboard: {} characters", content.length());
+            long start = System.nanoTime();
+            ownedContents = contents;
+            systemClipboard.setContents(contents, ownership);
+            metrics.recordSetClipboard(System.nanoTime() - start);
+            logger.debug("Set system clipboard: {}", description);
         } catch (IllegalStateException e) {
+            ownedContents = null;
             logger.warn("Clipboard is currently unavailable", e);
         } catch (Exception e) {
+            ownedContents = null;
             logger.error("Failed to set system clipboard", e);
         }
     }
@@ -124,34 +1142,247 @@ public class ClipboardManager {
      * @return the history size
      */
     public int getHistorySize() {
-        return clipboardHistory.size();
+        return read(ignored -> clipboardHistory.size(), 0);
     }
     
     /**
-     * Returns an unmodifiable view of the clipboard history.
+     * Returns the maximum number of items kept in clipboard history.
+     * @return the history capacity
+     */
+    public int getHistoryCapacity() {
+        return clipboardHistory.capacity();
+    }
+    
+    /**
+     * Returns a read-only view of the clipboard history, oldest item first.
+     * The view is backed by the history buffer and does not copy it; persisted
+     * entries are read from disk as they are accessed.
      * @return the clipboard history
      */
     public List<String> getHistory() {
-        return Collections.unmodifiableList(clipboardHistory);
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                HistoryEntry entry = read(clipboardHistory::get, index);
+                return getText(entry);
+            }
+            
+            @Override
+            public int size() {
+                return getHistorySize();
+            }
+        };
     }
     
     /**
-     * Clears all clipboard history.
+     * Clears all clipboard history. The search index and the persisted log are cleared
+     * by their stages, after any changes queued before.
      */
     public void clearHistory() {
-        clipboardHistory.clear();
+        long stamp = lock.writeLock();
+        try {
+            clipboardHistory.clear();
+            entriesByHash.clear();
+            if (ranking != null) {
+                ranking.clear();
+            }
+            storage.onCleared();
+            changes.add(new HistoryChange(HistoryChange.Kind.CLEARED, null, null));
+        } finally {
+            unlockAndPublish(stamp);
+        }
         logger.info("Clipboard history cleared");
     }
     
     /**
-     * Clears the system clipboard.
+     * Returns the storage policy, which reports per-tier sizes and hit counts.
+     * @return the history storage
      */
-    private void clearSystemClipboard() {
-        try {
-            StringSelection selection = new StringSelection("");
-            systemClipboard.setContents(selection, null);
-        } catch (Exception e) {
-            logger.debug("Could not clear system clipboard", e);
+    public HistoryStorage getStorage() {
+        return storage;
+    }
+    
+    /**
+     * Returns the log that hot-path events are recorded to.
+     * @return the event log, disabled if it is turned off
+     */
+    public EventLog getEventLog() {
+        return eventLog;
+    }
+    
+    /**
+     * Returns the capture and paste metrics, which can be registered for JMX.
+     * @return the metrics
+     */
+    public ClipboardMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Returns the system clipboard this manager reads from and writes to.
+     * @return the system clipboard
+     */
+    Clipboard getSystemClipboard() {
+        return systemClipboard;
+    }
+    
+    /**
+     * Sets the owner passed along when history items are placed on the system clipboard,
+     * so it is told when another application takes the clipboard over.
+     * @param owner the clipboard owner, or null
+     */
+    void setClipboardOwner(ClipboardOwner owner) {
+        this.clipboardOwner = owner;
+    }
+    
+    /**
+     * Drains the capture pipeline, closes the persistent history log and logs storage statistics.
+     * The spill log, if any, is deleted, and buffered events are written to the event log.
+     */
+    public void close() {
+        if (memoryMonitor != null) {
+            memoryMonitor.close();
+        }
+        for (PipelineStage<?> stage : List.of(normalizeStage, storeStage, indexStage, persistStage)) {
+            stage.close(STAGE_DRAIN_TIMEOUT_MILLIS);
+        }
+        logger.info("Clipboard history storage: {}", storage.describeStatistics());
+        logger.info("Clipboard metrics: {}", metrics.describeStatistics());
+        if (historyLog != null) {
+            try {
+                historyLog.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close clipboard history log", e);
+            }
+        }
+        closeSpillLog();
+        eventLog.close();
+    }
+    
+    /**
+     * A capture travelling through the read, normalize and store stages.
+     */
+    private static final class CaptureTask {
+        private final long readAt;
+        private final CaptureCallback callback;
+        private HistoryEntry.ContentType contentType = HistoryEntry.ContentType.TEXT;
+        private String content;
+        private BufferedImage image;
+        private HistoryEntry pasted;
+        private long hash;
+        
+        CaptureTask(String content, long readAt, CaptureCallback callback) {
+            this.content = content;
+            this.readAt = readAt;
+            this.callback = callback;
+        }
+        
+        void complete(boolean changed) {
+            if (callback != null) {
+                callback.captured(changed);
+            }
+        }
+    }
+    
+    /**
+     * An entry that may be spilled, with how much spilling it is worth.
+     */
+    private static final class SpillCandidate {
+        private final HistoryEntry entry;
+        private final double priority;
+        
+        SpillCandidate(HistoryEntry entry, double priority) {
+            this.entry = entry;
+            this.priority = priority;
+        }
+    }
+    
+    /**
+     * An image placed back on the clipboard. It stays PNG-encoded until an application asks for it.
+     */
+    private static final class ImageSelection implements Transferable {
+        private final byte[] png;
+        
+        ImageSelection(byte[] png) {
+            this.png = png;
+        }
+        
+        @Override
+        public DataFlavor[] getTransferDataFlavors() {
+            return new DataFlavor[] {DataFlavor.imageFlavor};
+        }
+        
+        @Override
+        public boolean isDataFlavorSupported(DataFlavor flavor) {
+            return DataFlavor.imageFlavor.equals(flavor);
+        }
+        
+        @Override
+        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
+            if (!isDataFlavorSupported(flavor)) {
+                throw new UnsupportedFlavorException(flavor);
+            }
+            return ImageCodec.decode(png);
+        }
+    }
+    
+    /**
+     * Copied files placed back on the clipboard, offered as a file list and as their paths.
+     */
+    private static final class FileListSelection implements Transferable {
+        private static final DataFlavor[] FLAVORS = {DataFlavor.javaFileListFlavor, DataFlavor.stringFlavor};
+        
+        private final String paths;
+        
+        FileListSelection(String paths) {
+            this.paths = paths;
+        }
+        
+        @Override
+        public DataFlavor[] getTransferDataFlavors() {
+            return FLAVORS.clone();
+        }
+        
+        @Override
+        public boolean isDataFlavorSupported(DataFlavor flavor) {
+            return Arrays.asList(FLAVORS).contains(flavor);
+        }
+        
+        @Override
+        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+            if (DataFlavor.stringFlavor.equals(flavor)) {
+                return paths;
+            }
+            if (!DataFlavor.javaFileListFlavor.equals(flavor)) {
+                throw new UnsupportedFlavorException(flavor);
+            }
+            List<File> files = new ArrayList<>();
+            for (String path : paths.split("\n")) {
+                files.add(new File(path));
+            }
+            return files;
+        }
+    }
+    
+    /**
+     * A change to history, replayed in order by the index and persist stages.
+     */
+    private static final class HistoryChange {
+        enum Kind {
+            ADDED,
+            MOVED,
+            REMOVED,
+            CLEARED
+        }
+        
+        private final Kind kind;
+        private final HistoryEntry entry;
+        private final String content;
+        
+        HistoryChange(Kind kind, HistoryEntry entry, String content) {
+            this.kind = kind;
+            this.entry = entry;
+            this.content = content;
         }
     }
 }
@@ -0,0 +1,217 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Latency histograms and counters for the capture, display and paste paths, exposed over JMX.
+ * Recording never allocates or does I/O, so it is safe on the native hook thread and the EDT.
+ */
+public class ClipboardMetrics implements ClipboardMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(ClipboardMetrics.class);
+
+    public static final String OBJECT_NAME = "com.key.clipboarduse:type=Metrics";
+
+    private final LatencyHistogram clipboardRead = new LatencyHistogram();
+    private final LatencyHistogram captureToStore = new LatencyHistogram();
+    private final LatencyHistogram hotkeyToVisible = new LatencyHistogram();
+    private final LatencyHistogram setClipboard = new LatencyHistogram();
+    private final AtomicLong captures = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong movedToFront = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final IntSupplier historySize;
+    private final LongSupplier historyBytes;
+    private final List<PipelineStage<?>> stages;
+    private ObjectName registeredName;
+
+    /**
+     * Creates the metrics.
+     * @param historySize reports the current number of history entries
+     * @param historyBytes reports the current stored bytes of history
+     * @param stages the capture pipeline stages, in order
+     */
+    public ClipboardMetrics(IntSupplier historySize, LongSupplier historyBytes, List<PipelineStage<?>> stages) {
+        this.historySize = historySize;
+        this.historyBytes = historyBytes;
+        this.stages = stages;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server. Failures are logged, not thrown.
+     */
+    public synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            server.registerMBean(this, name);
+            registeredName = name;
+            logger.info("Metrics registered as {}", OBJECT_NAME);
+        } catch (JMException e) {
+            logger.warn("Failed to register metrics MBean", e);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if registered.
+     */
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            logger.warn("Failed to unregister metrics MBean", e);
+        }
+        registeredName = null;
+    }
+
+    public void recordClipboardRead(long nanos) {
+        clipboardRead.record(nanos);
+    }
+
+    public void recordCaptureToStore(long nanos) {
+        captureToStore.record(nanos);
+    }
+
+    public void recordHotkeyToVisible(long nanos) {
+        hotkeyToVisible.record(nanos);
+    }
+
+    public void recordSetClipboard(long nanos) {
+        setClipboard.record(nanos);
+    }
+
+    public void countCapture() {
+        captures.incrementAndGet();
+    }
+
+    public void countDuplicate() {
+        duplicates.incrementAndGet();
+    }
+
+    public void countMovedToFront() {
+        movedToFront.incrementAndGet();
+    }
+
+    public void countEviction() {
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * Returns the raw hotkey-to-visible histogram, e.g. to count frames over budget.
+     * @return the histogram
+     */
+    public LatencyHistogram getHotkeyToVisibleHistogram() {
+        return hotkeyToVisible;
+    }
+
+    @Override
+    public LatencySnapshot getClipboardReadLatency() {
+        return clipboardRead.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getCaptureToStoreLatency() {
+        return captureToStore.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getHotkeyToVisibleLatency() {
+        return hotkeyToVisible.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getSetClipboardLatency() {
+        return setClipboard.snapshot();
+    }
+
+    @Override
+    public long getCaptureCount() {
+        return captures.get();
+    }
+
+    @Override
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    @Override
+    public long getMovedToFrontCount() {
+        return movedToFront.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public int getHistorySize() {
+        return historySize.getAsInt();
+    }
+
+    @Override
+    public long getHistoryBytes() {
+        return historyBytes.getAsLong();
+    }
+
+    @Override
+    public Map<String, Integer> getStageQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (PipelineStage<?> stage : stages) {
+            depths.put(stage.getName(), stage.getQueueDepth());
+        }
+        return depths;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getStageLatencies() {
+        Map<String, LatencySnapshot> latencies = new LinkedHashMap<>();
+        for (PipelineStage<?> stage : stages) {
+            latencies.put(stage.getName(), stage.getLatency().snapshot());
+        }
+        return latencies;
+    }
+
+    @Override
+    public void reset() {
+        clipboardRead.reset();
+        captureToStore.reset();
+        hotkeyToVisible.reset();
+        setClipboard.reset();
+        captures.set(0);
+        duplicates.set(0);
+        movedToFront.set(0);
+        evictions.set(0);
+        for (PipelineStage<?> stage : stages) {
+            stage.getLatency().reset();
+        }
+    }
+
+    /**
+     * Describes the metrics for logging.
+     * @return a multi-part summary
+     */
+    public String describeStatistics() {
+        return "captures=" + getCaptureCount() + ", duplicates=" + getDuplicateCount()
+            + ", moved to front=" + getMovedToFrontCount() + ", evictions=" + getEvictionCount()
+            + "; clipboard read [" + getClipboardReadLatency() + "]"
+            + "; capture to store [" + getCaptureToStoreLatency() + "]"
+            + "; hotkey to visible [" + getHotkeyToVisibleLatency() + "]"
+            + "; set clipboard [" + getSetClipboardLatency() + "]"
+            + "; stages " + getStageLatencies();
+    }
+}
@@ -0,0 +1,63 @@
+package com.key.clipboarduse.main;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ClipboardMetrics}, registered as
+ * {@code com.key.clipboarduse:type=Metrics}. Latencies are in microseconds.
+ */
+public interface ClipboardMetricsMXBean {
+
+    /**
+     * Time to read text from the system clipboard.
+     * @return the latency summary
+     */
+    LatencySnapshot getClipboardReadLatency();
+
+    /**
+     * Time from clipboard text being read until it is stored in history.
+     * @return the latency summary
+     */
+    LatencySnapshot getCaptureToStoreLatency();
+
+    /**
+     * Time from a Win+Shift press until the history item is painted.
+     * @return the latency summary
+     */
+    LatencySnapshot getHotkeyToVisibleLatency();
+
+    /**
+     * Time to place a history item on the system clipboard.
+     * @return the latency summary
+     */
+    LatencySnapshot getSetClipboardLatency();
+
+    long getCaptureCount();
+
+    long getDuplicateCount();
+
+    long getMovedToFrontCount();
+
+    long getEvictionCount();
+
+    int getHistorySize();
+
+    long getHistoryBytes();
+
+    /**
+     * Number of items waiting in each capture pipeline stage.
+     * @return queue depth by stage name
+     */
+    Map<String, Integer> getStageQueueDepths();
+
+    /**
+     * Time items spend in each capture pipeline stage, from being queued until handled.
+     * @return latency summary by stage name
+     */
+    Map<String, LatencySnapshot> getStageLatencies();
+
+    /**
+     * Clears all histograms and counters.
+     */
+    void reset();
+}
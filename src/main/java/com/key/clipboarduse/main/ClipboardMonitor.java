@@ -0,0 +1,210 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.ClipboardOwner;
+import java.awt.datatransfer.FlavorEvent;
+import java.awt.datatransfer.FlavorListener;
+import java.awt.datatransfer.Transferable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Detects clipboard changes and captures them into history off the native hook thread.
+ * Changes are signalled by clipboard flavor events, by losing ownership of content the
+ * utility placed on the clipboard, by the Ctrl+C hotkey, and by a slow polling fallback.
+ * Bursts of signals are coalesced into a single capture on the monitor thread.
+ */
+public class ClipboardMonitor implements FlavorListener, ClipboardOwner {
+    private static final Logger logger = LoggerFactory.getLogger(ClipboardMonitor.class);
+
+    /**
+     * What signalled a possible clipboard change.
+     */
+    public enum Source {
+        FLAVOR_CHANGE,
+        OWNERSHIP_LOST,
+        HOTKEY,
+        POLL
+    }
+
+    private final ClipboardManager clipboardManager;
+    private final Clipboard clipboard;
+    private final long coalesceDelayMillis;
+    private final long hotkeyDelayMillis;
+    private final long pollIntervalMillis;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean capturePending = new AtomicBoolean();
+    private volatile long pendingSince;
+    private volatile Source pendingSource;
+
+    private final AtomicLongArray signals = new AtomicLongArray(Source.values().length);
+    private final AtomicLongArray newEntries = new AtomicLongArray(Source.values().length);
+    private final AtomicLong coalescedSignals = new AtomicLong();
+    private final AtomicLong captures = new AtomicLong();
+    private final AtomicLong totalCaptureLatencyNanos = new AtomicLong();
+    private final AtomicLong maxCaptureLatencyNanos = new AtomicLong();
+
+    public ClipboardMonitor(ClipboardManager clipboardManager, ClipboardConfig config) {
+        this.clipboardManager = clipboardManager;
+        this.clipboard = clipboardManager.getSystemClipboard();
+        this.coalesceDelayMillis = config.getMonitorCoalesceDelay();
+        this.hotkeyDelayMillis = config.getMonitorHotkeyDelay();
+        this.pollIntervalMillis = config.getMonitorPollInterval();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "clipboard-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts listening for clipboard changes.
+     */
+    public void start() {
+        clipboard.addFlavorListener(this);
+        clipboardManager.setClipboardOwner(this);
+        if (pollIntervalMillis > 0) {
+            executor.scheduleWithFixedDelay(() -> requestCapture(Source.POLL),
+                pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Clipboard monitor started (poll interval {} ms)", pollIntervalMillis);
+    }
+
+    /**
+     * Stops listening and logs capture statistics.
+     */
+    public void stop() {
+        clipboard.removeFlavorListener(this);
+        clipboardManager.setClipboardOwner(null);
+        executor.shutdownNow();
+        logger.info("Clipboard monitor stopped: {}", describeStatistics());
+    }
+
+    /**
+     * Schedules a clipboard capture. Never blocks; signals arriving while a capture is
+     * pending are folded into it.
+     * @param source what signalled the change
+     */
+    public void requestCapture(Source source) {
+        signals.incrementAndGet(source.ordinal());
+        if (!capturePending.compareAndSet(false, true)) {
+            coalescedSignals.incrementAndGet();
+            return;
+        }
+        pendingSince = System.nanoTime();
+        pendingSource = source;
+        long delay = source == Source.HOTKEY ? hotkeyDelayMillis : source == Source.POLL ? 0 : coalesceDelayMillis;
+        try {
+            executor.schedule(this::capture, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            capturePending.set(false);
+            logger.debug("Clipboard monitor is not accepting capture requests", e);
+        }
+    }
+
+    @Override
+    public void flavorsChanged(FlavorEvent event) {
+        requestCapture(Source.FLAVOR_CHANGE);
+    }
+
+    @Override
+    public void lostOwnership(Clipboard lostClipboard, Transferable contents) {
+        requestCapture(Source.OWNERSHIP_LOST);
+    }
+
+    /**
+     * Reads the clipboard and hands the content to the capture pipeline. Statistics are
+     * recorded once the pipeline has stored it.
+     */
+    private void capture() {
+        Source source = pendingSource;
+        long since = pendingSince;
+        capturePending.set(false);
+        try {
+            // Polls skip content that has not changed since the last read before hashing it
+            if (!clipboardManager.submitCapture(changed -> captured(source, since, changed), source == Source.POLL)) {
+                captured(source, since, false);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Clipboard capture failed", e);
+        }
+    }
+
+    private void captured(Source source, long since, boolean changed) {
+        if (changed) {
+            newEntries.incrementAndGet(source.ordinal());
+        }
+        long latency = System.nanoTime() - since;
+        captures.incrementAndGet();
+        totalCaptureLatencyNanos.addAndGet(latency);
+        maxCaptureLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Returns how many change signals a source has produced.
+     * @param source the signal source
+     * @return the signal count
+     */
+    public long getSignalCount(Source source) {
+        return signals.get(source.ordinal());
+    }
+
+    /**
+     * Returns how many new history entries were captured after a signal from the source.
+     * Entries found by {@link Source#POLL} are copies the event sources missed.
+     * @param source the signal source
+     * @return the new entry count
+     */
+    public long getNewEntryCount(Source source) {
+        return newEntries.get(source.ordinal());
+    }
+
+    /**
+     * Returns the share of new entries that only the polling fallback detected.
+     * @return the missed-copy rate between 0 and 1
+     */
+    public double getMissedCopyRate() {
+        long total = 0;
+        for (Source source : Source.values()) {
+            total += newEntries.get(source.ordinal());
+        }
+        return total == 0 ? 0 : (double) newEntries.get(Source.POLL.ordinal()) / total;
+    }
+
+    /**
+     * Returns the mean time from the first signal of a burst until its capture finished.
+     * @return the mean capture latency in nanoseconds
+     */
+    public long getMeanCaptureLatencyNanos() {
+        long count = captures.get();
+        return count == 0 ? 0 : totalCaptureLatencyNanos.get() / count;
+    }
+
+    public long getMaxCaptureLatencyNanos() {
+        return maxCaptureLatencyNanos.get();
+    }
+
+    public long getCoalescedSignalCount() {
+        return coalescedSignals.get();
+    }
+
+    private String describeStatistics() {
+        StringBuilder builder = new StringBuilder();
+        for (Source source : Source.values()) {
+            builder.append(source).append('=').append(getSignalCount(source))
+                .append('/').append(getNewEntryCount(source)).append(' ');
+        }
+        return builder.append("(signals/new entries), coalesced=").append(getCoalescedSignalCount())
+            .append(", mean latency=").append(TimeUnit.NANOSECONDS.toMillis(getMeanCaptureLatencyNanos())).append(" ms")
+            .append(", max latency=").append(TimeUnit.NANOSECONDS.toMillis(getMaxCaptureLatencyNanos())).append(" ms")
+            .append(", missed-copy rate=").append(String.format("%.1f%%", getMissedCopyRate() * 100))
+            .toString();
+    }
+}
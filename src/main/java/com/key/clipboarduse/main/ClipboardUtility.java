@@ -5,7 +5,6 @@ import com.github.kwhat.jnativehook.NativeHookException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.SwingUtilities;
 import java.util.logging.Level;
 
 /**
@@ -24,15 +23,14 @@ public class ClipboardUtility {
 
         logger.info("Starting Clipboard Utility application");
 
-        SwingUtilities.invokeLater(() -> {
-            try {
-                ClipboardWindow window = new ClipboardWindow();
-                window.initialize();
-                logger.info("Clipboard Utility initialized successfully");
-            } catch (NativeHookException e) {
-                logger.error("Failed to initialize native hook. The application requires native keyboard/mouse access.", e);
-                System.exit(1);
-            }
-        });
+        ClipboardApplication application = new ClipboardApplication(ClipboardConfig.load());
+        Runtime.getRuntime().addShutdownHook(new Thread(application::close, "clipboard-shutdown"));
+        try {
+            application.start();
+            logger.info("Clipboard Utility initialized successfully");
+        } catch (NativeHookException e) {
+            logger.error("Failed to initialize native hook. The application requires native keyboard/mouse access.", e);
+            System.exit(1);
+        }
     }
 }
@@ -1,22 +1,49 @@
 package com.key.clipboarduse.main;
 
 import com.formdev.flatlaf.FlatLightLaf;
-import com.github.kwhat.jnativehook.GlobalScreen;
-import com.github.kwhat.jnativehook.NativeHookException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Main window for displaying clipboard history.
  * Shows when user navigates through clipboard history with Win+Shift.
  * Features a modern, clean UI design with improved usability.
+ * Images are shown as thumbnails from a {@link ThumbnailCache}, so only the thumbnails
+ * of recently shown images are kept decoded.
+ * Search mode with an empty query browses the whole history through a {@link HistoryListModel},
+ * which reads rows straight from the history; rows have a fixed size, so only the visible
+ * rows are ever measured or rendered.
  */
-public class ClipboardWindow extends JFrame {
+public class ClipboardWindow extends JFrame implements HistoryDisplay {
     private static final Logger logger = LoggerFactory.getLogger(ClipboardWindow.class);
+    private static final long serialVersionUID = 1L;
     
     // UI Constants
     private static final int WINDOW_WIDTH = 700;
@@ -25,6 +52,17 @@ public class ClipboardWindow extends JFrame {
     private static final int BORDER_PADDING = 20;
     private static final int TEXT_AREA_FONT_SIZE = 14;
     private static final int HEADER_FONT_SIZE = 13;
+    private static final int PAGE_CHARS = 16 * 1024;
+    private static final int PRERENDERED_PAGES = 4;
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+    private static final int SEARCH_RESULT_LIMIT = 200;
+    private static final int SEARCH_PREVIEW_LENGTH = 160;
+    private static final int BROWSER_REFRESH_MILLIS = 500;
+    private static final String PREVIEW_CARD = "preview";
+    private static final String SEARCH_CARD = "search";
+    private static final String IMAGE_CARD = "image";
+    private static final int THUMBNAIL_WIDTH = 640;
+    private static final int THUMBNAIL_HEIGHT = 300;
     
     // Colors for modern UI
     private static final Color HEADER_BG_COLOR = new Color(250, 250, 250);
@@ -33,16 +71,88 @@ public class ClipboardWindow extends JFrame {
     private static final Color BORDER_COLOR = new Color(220, 220, 220);
     
     private final JTextArea textArea;
+    private final ImagePreview imagePreview;
+    private final JLabel imageCaption;
     private final JLabel instructionLabel;
+    private final JTextField searchField;
+    private final DefaultListModel<HistoryEntry> searchResults;
+    private final HistoryListModel historyModel;
+    private final JList<HistoryEntry> searchResultList;
+    private final Timer browserRefresh;
+    private final CardLayout contentLayout;
+    private final JPanel contentCards;
     private final ClipboardManager clipboardManager;
-    private KeyboardEventHandler keyboardEventHandler;
+    private final HotkeyEngine hotkeys;
+    private final ThumbnailCache thumbnails;
+    private final ExecutorService searchExecutor;
+    private final ExecutorService previewExecutor;
+    private final ExecutorService prerenderExecutor;
+    private final Map<HistoryEntry, PreviewPage> prerenderedPages = new LinkedHashMap<HistoryEntry, PreviewPage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<HistoryEntry, PreviewPage> eldest) {
+            return size() > PRERENDERED_PAGES;
+        }
+    };
+    private final AtomicLong slowPreviewCount = new AtomicLong();
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    private final AtomicInteger showGeneration = new AtomicInteger();
+    private volatile boolean searchActive;
+    private HistoryEntry pagedEntry;
+    private String pagedText = "";
+    private boolean pagedMore;
+    private boolean pageLoading;
+    // Reader of the entry being paged, positioned after the last page read; pre-render thread only
+    private Reader pageReader;
+    private HistoryEntry pageReaderEntry;
+    private long pageReaderOffset;
     
-    public ClipboardWindow() {
-        this.clipboardManager = new ClipboardManager();
+    /**
+     * Builds the window. Must be called on the event dispatch thread, after
+     * {@link #setupLookAndFeel()}.
+     * @param clipboardManager the history to show
+     * @param hotkeys the hotkeys described in the header
+     * @param thumbnailCacheSize how many bytes of image thumbnails to keep decoded
+     */
+    public ClipboardWindow(ClipboardManager clipboardManager, HotkeyEngine hotkeys, long thumbnailCacheSize) {
+        this.clipboardManager = clipboardManager;
+        this.hotkeys = hotkeys;
+        this.thumbnails = new ThumbnailCache(clipboardManager, thumbnailCacheSize, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
         this.textArea = new JTextArea();
+        this.imagePreview = new ImagePreview();
+        this.imageCaption = new JLabel("", SwingConstants.CENTER);
         this.instructionLabel = new JLabel();
+        this.searchField = new JTextField();
+        this.searchResults = new DefaultListModel<>();
+        this.searchResultList = new JList<>(searchResults);
+        this.contentLayout = new CardLayout();
+        this.contentCards = new JPanel(contentLayout);
+        this.searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "clipboard-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.previewExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "clipboard-preview");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.prerenderExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "clipboard-prerender");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.historyModel = new HistoryListModel(clipboardManager, SEARCH_PREVIEW_LENGTH, prerenderExecutor);
+        this.browserRefresh = new Timer(BROWSER_REFRESH_MILLIS, e -> historyModel.refresh());
         
-        // Set modern Look and Feel
+        setupWindow();
+    }
+    
+    /**
+     * Installs the modern Look and Feel. Loading it is a large part of UI start-up, so it is
+     * done on the event dispatch thread while the rest of the application starts.
+     */
+    public static void setupLookAndFeel() {
         try {
             FlatLightLaf.setup();
             UIManager.put("TextComponent.arc", 8);
@@ -58,8 +168,6 @@ public class ClipboardWindow extends JFrame {
                 logger.warn("Failed to set system Look and Feel", ex);
             }
         }
-        
-        setupWindow();
     }
     
     /**
@@ -83,9 +191,11 @@ public class ClipboardWindow extends JFrame {
         JPanel headerPanel = createHeaderPanel();
         mainPanel.add(headerPanel, BorderLayout.NORTH);
         
-        // Create content panel with text area
-        JPanel contentPanel = createContentPanel();
-        mainPanel.add(contentPanel, BorderLayout.CENTER);
+        // Create content panels: text preview, image preview and search, one visible at a time
+        contentCards.add(createContentPanel(), PREVIEW_CARD);
+        contentCards.add(createImagePanel(), IMAGE_CARD);
+        contentCards.add(createSearchPanel(), SEARCH_CARD);
+        mainPanel.add(contentCards, BorderLayout.CENTER);
         
         setContentPane(mainPanel);
     }
@@ -108,8 +218,10 @@ public class ClipboardWindow extends JFrame {
         
         // Instruction text
         instructionLabel.setText("<html><b>Clipboard History Preview</b><br/>"
-            + "<span style='font-size:11px; color:#666;'>Press <b>SHIFT</b> for next item • "
-            + "Release <b>Win</b> key to paste • <b>Win+Shift+E</b> to exit</span></html>");
+            + "<span style='font-size:11px; color:#666;'>Press <b>" + hotkeys.describe(HotkeyEngine.Action.CYCLE)
+            + "</b> for next item • Release <b>" + hotkeys.describe(HotkeyEngine.Action.COMMIT) + "</b> to paste • <b>"
+            + hotkeys.describe(HotkeyEngine.Action.SEARCH) + "</b> to search • <b>"
+            + hotkeys.describe(HotkeyEngine.Action.EXIT) + "</b> to exit</span></html>");
         instructionLabel.setFont(new Font("Segoe UI", Font.PLAIN, HEADER_FONT_SIZE));
         instructionLabel.setForeground(HEADER_TEXT_COLOR);
         headerPanel.add(instructionLabel, BorderLayout.CENTER);
@@ -144,11 +256,114 @@ public class ClipboardWindow extends JFrame {
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         
+        // Append the next page of a long entry once the user scrolls near the end of what is shown
+        BoundedRangeModel scrollModel = scrollPane.getVerticalScrollBar().getModel();
+        scrollModel.addChangeListener(e -> {
+            if (scrollModel.getValue() + 2 * scrollModel.getExtent() >= scrollModel.getMaximum()) {
+                showNextPage();
+            }
+        });
+        
         contentPanel.add(scrollPane, BorderLayout.CENTER);
         
         return contentPanel;
     }
     
+    /**
+     * Creates the panel showing an image thumbnail above its size.
+     */
+    private JPanel createImagePanel() {
+        JPanel imagePanel = new JPanel(new BorderLayout(0, 8));
+        imagePanel.setBackground(TEXT_AREA_BG_COLOR);
+        imagePanel.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(BORDER_COLOR, 1),
+            BorderFactory.createEmptyBorder(10, 10, 10, 10)
+        ));
+        imageCaption.setFont(new Font("Segoe UI", Font.PLAIN, HEADER_FONT_SIZE));
+        imageCaption.setForeground(HEADER_TEXT_COLOR);
+        imagePanel.add(imagePreview, BorderLayout.CENTER);
+        imagePanel.add(imageCaption, BorderLayout.SOUTH);
+        return imagePanel;
+    }
+    
+    /**
+     * Creates the search panel: a query field above the list of matching entries.
+     */
+    private JPanel createSearchPanel() {
+        JPanel searchPanel = new JPanel(new BorderLayout(0, 10));
+        searchPanel.setBackground(Color.WHITE);
+        
+        searchField.setFont(new Font("Segoe UI", Font.PLAIN, TEXT_AREA_FONT_SIZE));
+        searchField.putClientProperty("JTextField.placeholderText", "Type to search, or browse all of clipboard history below");
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                scheduleSearch();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                scheduleSearch();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                scheduleSearch();
+            }
+        });
+        
+        // Keep focus in the query field; arrows move through the results
+        InputMap inputMap = searchField.getInputMap(JComponent.WHEN_FOCUSED);
+        ActionMap actionMap = searchField.getActionMap();
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "pasteResult");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "closeSearch");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, 0), "nextResult");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_UP, 0), "previousResult");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_PAGE_DOWN, 0), "nextPage");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_PAGE_UP, 0), "previousPage");
+        actionMap.put("pasteResult", action(this::pasteSelectedResult));
+        actionMap.put("closeSearch", action(this::closeSearch));
+        actionMap.put("nextResult", action(() -> moveSelection(1)));
+        actionMap.put("previousResult", action(() -> moveSelection(-1)));
+        actionMap.put("nextPage", action(() -> moveSelection(visibleRowCount())));
+        actionMap.put("previousPage", action(() -> moveSelection(-visibleRowCount())));
+        
+        // Fixed row sizes let the list lay out any number of rows without measuring them
+        Font listFont = new Font("Segoe UI", Font.PLAIN, TEXT_AREA_FONT_SIZE);
+        searchResultList.setFont(listFont);
+        searchResultList.setFixedCellHeight(searchResultList.getFontMetrics(listFont).getHeight() + 4);
+        searchResultList.setFixedCellWidth(1);
+        searchResultList.setCellRenderer(new PreviewRenderer());
+        searchResultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        searchResultList.setFocusable(false);
+        searchResultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    pasteSelectedResult();
+                }
+            }
+        });
+        
+        JScrollPane scrollPane = new JScrollPane(searchResultList);
+        scrollPane.setBorder(BorderFactory.createLineBorder(BORDER_COLOR, 1));
+        scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        
+        searchPanel.add(searchField, BorderLayout.NORTH);
+        searchPanel.add(scrollPane, BorderLayout.CENTER);
+        
+        return searchPanel;
+    }
+    
+    private static Action action(Runnable runnable) {
+        return new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                runnable.run();
+            }
+        };
+    }
+    
     /**
      * Centers the window on the screen.
      */
@@ -160,47 +375,514 @@ public class ClipboardWindow extends JFrame {
     }
     
     /**
-     * Initializes native keyboard/mouse hooks and event handlers.
-     * @throws NativeHookException if native hook registration fails
+     * Realizes the window and lays out a sample page while it is still hidden, so the first
+     * Win+Shift press does not pay for native peer creation, font loading and class loading.
      */
-    public void initialize() throws NativeHookException {
-        try {
-            // Register native hook
-            GlobalScreen.registerNativeHook();
-            logger.info("Native hook registered successfully");
-            
-            // Create and register event handler
-            keyboardEventHandler = new KeyboardEventHandler(this, clipboardManager);
-            GlobalScreen.addNativeKeyListener(keyboardEventHandler);
-            
-            logger.info("Keyboard event handler registered");
-            logger.info("Clipboard Utility is now monitoring clipboard changes");
-            logger.info("Press Ctrl+C to capture clipboard, Win+Shift to cycle through history");
-            logger.info("Press Win+Shift+E to exit");
-            
-        } catch (NativeHookException e) {
-            logger.error("Failed to register native hook", e);
-            throw e;
-        }
+    void prewarm() {
+        addNotify();
+        PreviewPage sample = PreviewPage.of("Clipboard History Preview\n");
+        textArea.setDocument(sample.document);
+        validate();
+        textArea.getPreferredSize();
+        logger.debug("Clipboard window pre-warmed");
     }
     
     /**
      * Displays text in the window's text area.
+     * Only the first page is laid out right away, so large entries appear as fast as small ones;
+     * further pages are appended as the user scrolls down.
      * @param text the text to display
      */
     public void displayText(String text) {
-        SwingUtilities.invokeLater(() -> {
-            textArea.setText(text);
+        searchActive = false;
+        PreviewPage page = PreviewPage.of(text);
+        SwingUtilities.invokeLater(() -> showPage(page, System.nanoTime(), false));
+    }
+    
+    /**
+     * Shows a history item while the user cycles with Win+Shift. The item is looked up on the
+     * preview thread, so the calling hook thread never waits for storage and the shown item
+     * never waits behind background pre-rendering. Its page is taken from the pre-rendered pages
+     * when possible, so the EDT only swaps the document in and repaints. The window is shown in
+     * the same step instead of being hidden and shown again. The items on either side are then
+     * pre-rendered in the background. A request that a later press, hiding the window or
+     * opening search has superseded is skipped, also when it reaches the EDT.
+     * @param position the place of the item in cycle order, 1 for the first
+     */
+    @Override
+    public void showHistoryItem(int position) {
+        long requestedAt = System.nanoTime();
+        int generation = showGeneration.incrementAndGet();
+        searchActive = false;
+        try {
+            previewExecutor.execute(() -> {
+                if (generation != showGeneration.get()) {
+                    return;
+                }
+                HistoryEntry entry = clipboardManager.getCycleEntry(position);
+                if (entry == null) {
+                    return;
+                }
+                PreviewPage page = prerenderedPage(entry);
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == showGeneration.get()) {
+                        showPage(page, requestedAt, true);
+                    }
+                });
+                
+                int size = clipboardManager.getHistorySize();
+                prerender(position >= size ? 1 : position + 1);
+                prerender(position <= 1 ? size : position - 1);
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Preview executor is shut down", e);
+        }
+    }
+    
+    /**
+     * Swaps a prepared page into the text area, or its thumbnail into the image panel.
+     * Must be called on the EDT.
+     */
+    private void showPage(PreviewPage page, long requestedAt, boolean reveal) {
+        JComponent painted;
+        if (page.thumbnail != null) {
+            contentLayout.show(contentCards, IMAGE_CARD);
+            imagePreview.setImage(page.thumbnail);
+            imageCaption.setText(page.text);
+            painted = imagePreview;
+        } else {
+            contentLayout.show(contentCards, PREVIEW_CARD);
+            pagedEntry = page.entry;
+            pagedText = page.text;
+            pagedMore = page.more;
+            pageLoading = false;
+            textArea.setDocument(page.document);
             textArea.setCaretPosition(0); // Scroll to top
+            painted = textArea;
+        }
+        if (reveal && !isVisible()) {
+            super.setVisible(true);
+        }
+        if (isShowing()) {
+            getRootPane().validate();
+            painted.paintImmediately(painted.getVisibleRect());
+            recordPreviewLatency(System.nanoTime() - requestedAt);
+        }
+    }
+    
+    /**
+     * Returns the pre-rendered first page of an entry, building it if needed. Must not be called
+     * on the EDT or the hook thread.
+     */
+    private PreviewPage prerenderedPage(HistoryEntry entry) {
+        synchronized (prerenderedPages) {
+            PreviewPage page = prerenderedPages.get(entry);
+            if (page != null) {
+                return page;
+            }
+        }
+        PreviewPage page = entry.getContentType() == HistoryEntry.ContentType.IMAGE
+            ? PreviewPage.ofImage(clipboardManager.getText(entry), thumbnails.get(entry))
+            : PreviewPage.of(entry, clipboardManager.getTextPrefix(entry, PAGE_CHARS + 1));
+        synchronized (prerenderedPages) {
+            prerenderedPages.put(entry, page);
+        }
+        return page;
+    }
+    
+    /**
+     * Prepares the page of a history item on the pre-render thread.
+     */
+    private void prerender(int position) {
+        try {
+            prerenderExecutor.execute(() -> {
+                HistoryEntry entry = clipboardManager.getCycleEntry(position);
+                if (entry != null) {
+                    prerenderedPage(entry);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Pre-render executor is shut down", e);
+        }
+    }
+    
+    private void recordPreviewLatency(long latency) {
+        clipboardManager.getMetrics().recordHotkeyToVisible(latency);
+        if (latency > FRAME_NANOS) {
+            slowPreviewCount.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Returns how many previews took longer than one 60 Hz frame to paint.
+     * @return the slow preview count
+     */
+    public long getSlowPreviewCount() {
+        return slowPreviewCount.get();
+    }
+    
+    /**
+     * Appends the next page of the displayed entry, if any is left. Pages of history entries
+     * are read from storage on the pre-render thread and appended when they arrive, so the
+     * entry is never loaded as a whole. Must be called on the EDT.
+     */
+    private void showNextPage() {
+        if (!pagedMore || pageLoading) {
+            return;
+        }
+        Document document = textArea.getDocument();
+        int shownChars = document.getLength();
+        if (pagedEntry == null) {
+            int end = pageEnd(pagedText, shownChars);
+            textArea.append(pagedText.substring(shownChars, end));
+            pagedMore = end < pagedText.length();
+            return;
+        }
+        HistoryEntry entry = pagedEntry;
+        // A page that grows beyond its first page is no longer kept pre-rendered
+        synchronized (prerenderedPages) {
+            PreviewPage cached = prerenderedPages.get(entry);
+            if (cached != null && cached.document == document) {
+                prerenderedPages.remove(entry);
+            }
+        }
+        pageLoading = true;
+        try {
+            prerenderExecutor.execute(() -> {
+                String page = readPage(entry, shownChars);
+                SwingUtilities.invokeLater(() -> appendPage(document, shownChars, page));
+            });
+        } catch (RejectedExecutionException e) {
+            pageLoading = false;
+            logger.debug("Pre-render executor is shut down", e);
+        }
+    }
+    
+    /**
+     * Appends a page read in the background, unless another entry is shown by now.
+     */
+    private void appendPage(Document document, int offset, String page) {
+        if (textArea.getDocument() != document || document.getLength() != offset) {
+            return;
+        }
+        pageLoading = false;
+        if (page.isEmpty()) {
+            pagedMore = false;
+            return;
+        }
+        textArea.append(page);
+    }
+    
+    /**
+     * Reads the page of an entry starting at the given character offset. The reader is kept open
+     * after each page, so paging through an entry reads it once from start to end. Must be
+     * called on the pre-render thread.
+     * @return the page, or an empty string at the end of the entry or if it cannot be read
+     */
+    private String readPage(HistoryEntry entry, int offset) {
+        String text = entry.getCachedText();
+        if (text != null) {
+            return offset >= text.length() ? "" : text.substring(offset, pageEnd(text, offset));
+        }
+        try {
+            if (pageReaderEntry != entry || pageReaderOffset != offset) {
+                closePageReader();
+                pageReader = new InputStreamReader(clipboardManager.openText(entry), StandardCharsets.UTF_8);
+                pageReaderEntry = entry;
+                long remaining = offset;
+                long skipped;
+                while (remaining > 0 && (skipped = pageReader.skip(remaining)) > 0) {
+                    remaining -= skipped;
+                }
+                pageReaderOffset = offset - remaining;
+            }
+            char[] page = new char[PAGE_CHARS + 1];
+            int length = 0;
+            int read;
+            while (length < PAGE_CHARS && (read = pageReader.read(page, length, PAGE_CHARS - length)) > 0) {
+                length += read;
+            }
+            // Never end a page between the two halves of a surrogate pair
+            if (length > 0 && Character.isHighSurrogate(page[length - 1]) && (read = pageReader.read(page, length, 1)) > 0) {
+                length += read;
+            }
+            if (length == 0) {
+                closePageReader();
+                return "";
+            }
+            pageReaderOffset += length;
+            return new String(page, 0, length);
+        } catch (IOException e) {
+            logger.warn("Failed to read the next page of history entry {}", entry.getId(), e);
+            closePageReader();
+            return "";
+        }
+    }
+    
+    private void closePageReader() {
+        if (pageReader == null) {
+            return;
+        }
+        try {
+            pageReader.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close history entry reader", e);
+        }
+        pageReader = null;
+        pageReaderEntry = null;
+    }
+    
+    /**
+     * Finds where the page starting at the given offset ends. Pages end after a line break
+     * when one is near the page size, and never split a surrogate pair.
+     */
+    private static int pageEnd(String text, int start) {
+        int end = start + PAGE_CHARS;
+        if (end >= text.length()) {
+            return text.length();
+        }
+        int lineBreak = text.lastIndexOf('\n', end - 1);
+        if (lineBreak >= start + PAGE_CHARS / 2) {
+            return lineBreak + 1;
+        }
+        return Character.isHighSurrogate(text.charAt(end - 1)) ? end - 1 : end;
+    }
+    
+    /**
+     * Shows the window in search mode with an empty query field focused, browsing all of history.
+     */
+    @Override
+    public void openSearch() {
+        searchActive = true;
+        showGeneration.incrementAndGet();
+        SwingUtilities.invokeLater(() -> {
+            searchField.setText("");
+            showHistory();
+            browserRefresh.start();
+            contentLayout.show(contentCards, SEARCH_CARD);
+            super.setVisible(true);
+            toFront();
+            searchField.requestFocusInWindow();
         });
     }
     
+    /**
+     * Returns whether the window is in search mode, so Win key release must not hide it.
+     * @return true while search mode is open
+     */
+    @Override
+    public boolean isSearchActive() {
+        return searchActive;
+    }
+    
+    /**
+     * Leaves search mode and hides the window. Must be called on the EDT.
+     */
+    private void closeSearch() {
+        searchActive = false;
+        showGeneration.incrementAndGet();
+        searchGeneration.incrementAndGet();
+        browserRefresh.stop();
+        super.setVisible(false);
+        contentLayout.show(contentCards, PREVIEW_CARD);
+    }
+    
+    /**
+     * Shows all of history in the result list, most recent first. Must be called on the EDT.
+     */
+    private void showHistory() {
+        historyModel.refresh();
+        searchResultList.setModel(historyModel);
+        if (historyModel.getSize() > 0) {
+            searchResultList.setSelectedIndex(0);
+        }
+    }
+    
+    /**
+     * Runs the current query on the search thread, or browses all of history while the query is
+     * empty. Results of a query that was superseded by further typing are dropped instead of
+     * being shown. Previews of the results are computed on the search thread.
+     */
+    private void scheduleSearch() {
+        String query = searchField.getText();
+        int generation = searchGeneration.incrementAndGet();
+        if (query.trim().isEmpty()) {
+            showHistory();
+            return;
+        }
+        submitSearchTask(() -> {
+            if (generation != searchGeneration.get()) {
+                return;
+            }
+            List<HistoryEntry> matches = clipboardManager.search(query, SEARCH_RESULT_LIMIT);
+            for (int i = 0; i < matches.size() && generation == searchGeneration.get(); i++) {
+                HistoryEntry entry = matches.get(i);
+                if (historyModel.getCachedPreview(entry) == null) {
+                    historyModel.putPreview(entry, HistoryListModel.preview(
+                        clipboardManager.getTextPrefix(entry, SEARCH_PREVIEW_LENGTH + 1), SEARCH_PREVIEW_LENGTH));
+                }
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (generation != searchGeneration.get()) {
+                    return;
+                }
+                searchResults.clear();
+                for (HistoryEntry entry : matches) {
+                    searchResults.addElement(entry);
+                }
+                searchResultList.setModel(searchResults);
+                if (!searchResults.isEmpty()) {
+                    searchResultList.setSelectedIndex(0);
+                }
+            });
+        });
+    }
+    
+    /**
+     * Copies the selected search result to the clipboard and closes search mode.
+     * The entry text is loaded on the search thread since it may have to be read from disk.
+     */
+    private void pasteSelectedResult() {
+        HistoryEntry selected = searchResultList.getSelectedValue();
+        closeSearch();
+        if (selected == null) {
+            return;
+        }
+        submitSearchTask(() -> {
+            clipboardManager.recordSelection(selected);
+            clipboardManager.setSystemClipboard(selected);
+        });
+    }
+    
+    private void moveSelection(int delta) {
+        int size = searchResultList.getModel().getSize();
+        if (size == 0) {
+            return;
+        }
+        int index = Math.max(0, Math.min(size - 1, searchResultList.getSelectedIndex() + delta));
+        searchResultList.setSelectedIndex(index);
+        searchResultList.ensureIndexIsVisible(index);
+    }
+    
+    private int visibleRowCount() {
+        return Math.max(1, searchResultList.getVisibleRect().height / searchResultList.getFixedCellHeight() - 1);
+    }
+    
+    private void submitSearchTask(Runnable task) {
+        try {
+            searchExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Search executor is shut down", e);
+        }
+    }
+    
+    /**
+     * The first page of an entry, already inserted into a document that is not yet shown.
+     * Building the document off the EDT leaves only the swap and the paint for the EDT.
+     * Pages of history entries hold only the first page; the rest is read from storage as the
+     * user scrolls.
+     */
+    private static final class PreviewPage {
+        private final HistoryEntry entry;
+        private final String text;
+        private final PlainDocument document;
+        private final BufferedImage thumbnail;
+        private final boolean more;
+        
+        private PreviewPage(HistoryEntry entry, String text, PlainDocument document, BufferedImage thumbnail, boolean more) {
+            this.entry = entry;
+            this.text = text;
+            this.document = document;
+            this.thumbnail = thumbnail;
+            this.more = more;
+        }
+        
+        /**
+         * Shows text that is already in memory; further pages are cut from it.
+         */
+        static PreviewPage of(String text) {
+            int end = pageEnd(text, 0);
+            return new PreviewPage(null, text, document(text.substring(0, end)), null, end < text.length());
+        }
+        
+        /**
+         * Shows the first page of a history entry.
+         * @param prefix the first {@code PAGE_CHARS + 1} characters of the entry, or all of it if shorter
+         */
+        static PreviewPage of(HistoryEntry entry, String prefix) {
+            int end = pageEnd(prefix, 0);
+            return new PreviewPage(entry, "", document(prefix.substring(0, end)), null, end < prefix.length());
+        }
+        
+        /**
+         * Shows an image thumbnail with its description; falls back to the description alone
+         * if the image could not be decoded.
+         */
+        static PreviewPage ofImage(String description, BufferedImage thumbnail) {
+            return thumbnail != null ? new PreviewPage(null, description, null, thumbnail, false) : of(description);
+        }
+        
+        private static PlainDocument document(String firstPage) {
+            PlainDocument document = new PlainDocument();
+            try {
+                document.insertString(0, firstPage, null);
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+            return document;
+        }
+    }
+    
+    /**
+     * Paints a thumbnail centered, scaled down further if the window is smaller than it.
+     */
+    private static final class ImagePreview extends JComponent {
+        private static final long serialVersionUID = 1L;
+        
+        private BufferedImage image;
+        
+        void setImage(BufferedImage image) {
+            this.image = image;
+            repaint();
+        }
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            if (image == null) {
+                return;
+            }
+            double scale = Math.min(1, Math.min((double) getWidth() / image.getWidth(), (double) getHeight() / image.getHeight()));
+            int width = (int) (image.getWidth() * scale);
+            int height = (int) (image.getHeight() * scale);
+            g.drawImage(image, (getWidth() - width) / 2, (getHeight() - height) / 2, width, height, null);
+        }
+    }
+    
+    /**
+     * Renders a result row as the cached one-line preview of its entry.
+     */
+    private final class PreviewRenderer extends DefaultListCellRenderer {
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            String preview = value == null ? "" : historyModel.getPreview((HistoryEntry) value);
+            return super.getListCellRendererComponent(list, preview, index, isSelected, cellHasFocus);
+        }
+    }
+    
     /**
      * Makes the window visible with a smooth appearance.
      * Overridden to ensure proper UI thread execution.
      */
     @Override
     public void setVisible(boolean visible) {
+        if (!visible) {
+            // A history item still being prepared must not show the window again
+            showGeneration.incrementAndGet();
+        }
         if (SwingUtilities.isEventDispatchThread()) {
             super.setVisible(visible);
         } else {
@@ -213,12 +895,18 @@ public class ClipboardWindow extends JFrame {
      */
     @Override
     public void dispose() {
+        browserRefresh.stop();
+        searchExecutor.shutdownNow();
+        previewExecutor.shutdownNow();
         try {
-            GlobalScreen.unregisterNativeHook();
-            logger.info("Native hook unregistered");
-        } catch (NativeHookException e) {
-            logger.error("Failed to unregister native hook", e);
+            prerenderExecutor.execute(this::closePageReader);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Pre-render executor is shut down", e);
         }
+        prerenderExecutor.shutdown();
+        logger.info("Preview latency: {}, {} over one frame",
+            clipboardManager.getMetrics().getHotkeyToVisibleLatency(), getSlowPreviewCount());
+        logger.info("Image previews: {}", thumbnails.describeStatistics());
         super.dispose();
     }
 }
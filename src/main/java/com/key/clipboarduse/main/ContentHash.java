@@ -0,0 +1,104 @@
+package com.key.clipboarduse.main;
+
+/**
+ * 64-bit content hash for clipboard entries.
+ * Uses the xxHash64 round and avalanche functions over UTF-16 code units, so text can be
+ * fingerprinted without encoding it first.
+ */
+public final class ContentHash {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Hashes a character sequence.
+     * @param text the text to hash
+     * @return the 64-bit hash
+     */
+    public static long of(CharSequence text) {
+        int length = text.length();
+        long hash = PRIME5 + (long) length * 2;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long block = text.charAt(i)
+                | (long) text.charAt(i + 1) << 16
+                | (long) text.charAt(i + 2) << 32
+                | (long) text.charAt(i + 3) << 48;
+            hash ^= round(block);
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        for (; i < length; i++) {
+            hash ^= text.charAt(i) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+        return avalanche(hash);
+    }
+
+    /**
+     * Hashes a byte array.
+     * @param data the bytes to hash
+     * @return the 64-bit hash
+     */
+    public static long of(byte[] data) {
+        int length = data.length;
+        long hash = PRIME5 + length;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            long block = (data[i] & 0xFFL)
+                | (data[i + 1] & 0xFFL) << 8
+                | (data[i + 2] & 0xFFL) << 16
+                | (data[i + 3] & 0xFFL) << 24
+                | (data[i + 4] & 0xFFL) << 32
+                | (data[i + 5] & 0xFFL) << 40
+                | (data[i + 6] & 0xFFL) << 48
+                | (data[i + 7] & 0xFFL) << 56;
+            hash ^= round(block);
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        for (; i < length; i++) {
+            hash ^= (data[i] & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+        return avalanche(hash);
+    }
+
+    /**
+     * Hashes the pixels of an image, so copying the same picture again is recognized without
+     * encoding it.
+     * @param width the image width; images with the same pixels in a different shape differ
+     * @param pixels the ARGB pixels, row by row
+     * @return the 64-bit hash
+     */
+    public static long ofPixels(int width, int[] pixels) {
+        int length = pixels.length;
+        long hash = PRIME5 + (long) length * 4 + width * PRIME3;
+        int i = 0;
+        for (; i + 2 <= length; i += 2) {
+            hash ^= round((pixels[i] & 0xFFFFFFFFL) | (long) pixels[i + 1] << 32);
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (i < length) {
+            hash ^= (pixels[i] & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+        }
+        return avalanche(hash);
+    }
+
+    private static long round(long input) {
+        return Long.rotateLeft(input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long avalanche(long hash) {
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+}
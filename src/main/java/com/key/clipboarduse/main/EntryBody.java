@@ -0,0 +1,81 @@
+package com.key.clipboarduse.main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The UTF-8 body of a history entry, ready to be written to a channel.
+ * Bodies stored uncompressed in the history log are not read into memory; they are transferred
+ * straight from the segment file, which lets the operating system skip the copy through the heap.
+ */
+public final class EntryBody {
+    private final ByteBuffer buffer;
+    private final HistoryLog log;
+    private final HistoryLog.Record record;
+
+    private EntryBody(ByteBuffer buffer, HistoryLog log, HistoryLog.Record record) {
+        this.buffer = buffer;
+        this.log = log;
+        this.record = record;
+    }
+
+    /**
+     * Creates a body held in memory.
+     * @param utf8 the encoded text
+     * @return the body
+     */
+    static EntryBody of(byte[] utf8) {
+        return new EntryBody(ByteBuffer.wrap(utf8), null, null);
+    }
+
+    /**
+     * Creates a body that stays in the history log until it is written.
+     * @param log the history log
+     * @param record the record of an uncompressed text entry
+     * @return the body
+     */
+    static EntryBody inLog(HistoryLog log, HistoryLog.Record record) {
+        return new EntryBody(null, log, record);
+    }
+
+    /**
+     * Returns the body length in bytes.
+     * @return the UTF-8 length
+     */
+    public long length() {
+        return buffer != null ? buffer.capacity() : record.getLength();
+    }
+
+    /**
+     * Returns whether the body is transferred from the history log file.
+     * @return true if the body is not held in memory
+     */
+    public boolean isInLog() {
+        return buffer == null;
+    }
+
+    /**
+     * Returns a fresh view of a body held in memory, for gathering writes.
+     * @return the view, or null if the body is in the log
+     */
+    ByteBuffer view() {
+        return buffer != null ? buffer.duplicate() : null;
+    }
+
+    /**
+     * Writes part of the body. Non-blocking channels may accept fewer bytes than remain.
+     * @param target the channel to write to
+     * @param position the first byte of the body to write
+     * @return the number of bytes written
+     * @throws IOException if reading the log or writing the channel fails
+     */
+    public long writeTo(WritableByteChannel target, long position) throws IOException {
+        if (buffer != null) {
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) position);
+            return target.write(view);
+        }
+        return log.transferTo(record, position, target);
+    }
+}
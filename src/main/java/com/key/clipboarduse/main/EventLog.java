@@ -0,0 +1,371 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured log of hot-path events such as key actions, captures and evictions. Recording an
+ * event never blocks and never allocates: the event is copied into a preallocated ring buffer,
+ * and a background thread formats buffered events and writes them to a file, one line each:
+ * <pre>
+ * 2026-10-17T09:41:07.412Z clipboard-capture CAPTURED TEXT entry=42 size=118
+ * </pre>
+ * Producers claim slots with a compare-and-set on a shared counter; each slot has a sequence
+ * number that tells the writer thread when the slot is filled and producers when it is free
+ * again. When the buffer is full the event is dropped and counted, and the writer notes the
+ * drops in the file. The file is rolled over to {@code <name>.1} once it reaches its size limit.
+ */
+public class EventLog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(EventLog.class);
+
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final EventLog DISABLED = new EventLog();
+
+    /**
+     * Kinds of events, each with the names of its numeric values.
+     */
+    public enum Event {
+        SEARCH_OPENED,
+        HISTORY_EMPTY,
+        HISTORY_SHOWN("position", "size"),
+        HISTORY_PICKED("position", "entry"),
+        CAPTURED("entry", "size"),
+        DUPLICATE_SKIPPED("entry"),
+        MOVED_TO_FRONT("entry"),
+        EVICTED("entry", "stored-bytes");
+
+        private final String[] names;
+
+        Event(String... names) {
+            this.names = names;
+        }
+    }
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Event[] events;
+    private final Object[] details;
+    private final long[] firstValues;
+    private final long[] secondValues;
+    private final long[] times;
+    private final String[] threads;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Path file;
+    private final Path rolledFile;
+    private final long maxFileSize;
+    private final Thread writerThread;
+    private final StringBuilder line = new StringBuilder(128);
+    private volatile boolean running;
+    private long drained;
+    private long written;
+    private long droppedReported;
+    private long fileSize;
+    private Writer writer;
+
+    private EventLog() {
+        this.mask = -1;
+        this.sequences = null;
+        this.events = null;
+        this.details = null;
+        this.firstValues = null;
+        this.secondValues = null;
+        this.times = null;
+        this.threads = null;
+        this.file = null;
+        this.rolledFile = null;
+        this.maxFileSize = 0;
+        this.writerThread = null;
+    }
+
+    /**
+     * Creates an event log; call {@link #start()} to begin writing.
+     * @param file the log file; events are appended to it
+     * @param capacity how many events may wait to be written; rounded up to a power of two
+     * @param maxFileSize the size in bytes after which the file is rolled over
+     */
+    public EventLog(Path file, int capacity, long maxFileSize) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.events = new Event[size];
+        this.details = new Object[size];
+        this.firstValues = new long[size];
+        this.secondValues = new long[size];
+        this.times = new long[size];
+        this.threads = new String[size];
+        this.file = file;
+        this.rolledFile = file.resolveSibling(file.getFileName() + ".1");
+        this.maxFileSize = maxFileSize;
+        this.writerThread = new Thread(this::run, "event-log");
+        writerThread.setDaemon(true);
+        writerThread.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Returns an event log that records nothing.
+     * @return the disabled event log
+     */
+    public static EventLog disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Creates and starts the event log described by the configuration.
+     * @param config the configuration
+     * @return the started event log, or the disabled one if it is turned off or its file cannot be opened
+     */
+    public static EventLog open(ClipboardConfig config) {
+        if (!config.isEventLogEnabled()) {
+            return DISABLED;
+        }
+        EventLog eventLog = new EventLog(config.getEventLogFile(), config.getEventLogBufferSize(),
+            config.getEventLogMaxFileSize());
+        return eventLog.start() ? eventLog : DISABLED;
+    }
+
+    /**
+     * Opens the file and starts the writer thread.
+     * @return false if the file cannot be opened, in which case nothing is recorded
+     */
+    public synchronized boolean start() {
+        if (writerThread == null || running) {
+            return running;
+        }
+        try {
+            openFile();
+        } catch (IOException e) {
+            logger.warn("Failed to open event log {}, hot-path events are not logged", file, e);
+            return false;
+        }
+        running = true;
+        writerThread.start();
+        return true;
+    }
+
+    /**
+     * Records an event without values.
+     * @param event the event
+     * @return false if the event was dropped because the buffer is full or the log is not running
+     */
+    public boolean record(Event event) {
+        return record(event, null, 0, 0);
+    }
+
+    /**
+     * Records an event with one value.
+     * @param event the event
+     * @param value its first named value
+     * @return false if the event was dropped
+     */
+    public boolean record(Event event, long value) {
+        return record(event, null, value, 0);
+    }
+
+    /**
+     * Records an event with two values.
+     * @param event the event
+     * @param first its first named value
+     * @param second its second named value
+     * @return false if the event was dropped
+     */
+    public boolean record(Event event, long first, long second) {
+        return record(event, null, first, second);
+    }
+
+    /**
+     * Records an event. Never blocks; drops the event if the buffer is full.
+     * @param event the event
+     * @param detail written before the values, e.g. an enum constant; should not be built per event
+     * @param first its first named value
+     * @param second its second named value
+     * @return false if the event was dropped
+     */
+    public boolean record(Event event, Object detail, long first, long second) {
+        if (!running) {
+            return false;
+        }
+        long position = next.get();
+        int index;
+        while (true) {
+            index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (next.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = next.get();
+            } else if (difference < 0) {
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                position = next.get();
+            }
+        }
+        events[index] = event;
+        details[index] = detail;
+        firstValues[index] = first;
+        secondValues[index] = second;
+        times[index] = System.currentTimeMillis();
+        threads[index] = Thread.currentThread().getName();
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Returns how many events were dropped because the buffer was full.
+     * @return the dropped event count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns how many events have been written to the file.
+     * @return the written event count
+     */
+    public synchronized long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * Writes the events still buffered, stops the writer thread and closes the file.
+     */
+    @Override
+    public void close() {
+        if (writerThread == null || !running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            drain();
+            closeFile();
+            logger.info("Event log: {} events written to {}, {} dropped", written, file, dropped.get());
+        }
+    }
+
+    private void run() {
+        while (running) {
+            synchronized (this) {
+                drain();
+            }
+            LockSupport.parkNanos(this, DRAIN_INTERVAL_NANOS);
+        }
+    }
+
+    /**
+     * Writes every filled slot in order, frees it for producers and flushes the file.
+     */
+    private void drain() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            boolean wrote = false;
+            while (true) {
+                int index = (int) drained & mask;
+                if (sequences.get(index) != drained + 1) {
+                    break;
+                }
+                format(index);
+                events[index] = null;
+                details[index] = null;
+                threads[index] = null;
+                sequences.lazySet(index, drained + mask + 1);
+                drained++;
+                write();
+                written++;
+                wrote = true;
+            }
+            long droppedNow = dropped.get();
+            if (droppedNow != droppedReported) {
+                line.setLength(0);
+                line.append(Instant.ofEpochMilli(System.currentTimeMillis())).append(' ')
+                    .append(Thread.currentThread().getName()).append(" EVENTS_DROPPED count=")
+                    .append(droppedNow - droppedReported).append('\n');
+                droppedReported = droppedNow;
+                write();
+                wrote = true;
+            }
+            if (wrote) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write event log {}, hot-path events are no longer logged", file, e);
+            running = false;
+            closeFile();
+        }
+    }
+
+    private void format(int index) {
+        Event event = events[index];
+        line.setLength(0);
+        line.append(Instant.ofEpochMilli(times[index])).append(' ').append(threads[index]).append(' ').append(event.name());
+        if (details[index] != null) {
+            line.append(' ').append(details[index]);
+        }
+        if (event.names.length > 0) {
+            line.append(' ').append(event.names[0]).append('=').append(firstValues[index]);
+        }
+        if (event.names.length > 1) {
+            line.append(' ').append(event.names[1]).append('=').append(secondValues[index]);
+        }
+        line.append('\n');
+    }
+
+    /**
+     * Appends the formatted line, rolling the file over first if the line would not fit.
+     */
+    private void write() throws IOException {
+        if (fileSize > 0 && fileSize + line.length() > maxFileSize) {
+            closeFile();
+            Files.move(file, rolledFile, StandardCopyOption.REPLACE_EXISTING);
+            openFile();
+        }
+        writer.append(line);
+        fileSize += line.length();
+    }
+
+    private void openFile() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileSize = Files.size(file);
+    }
+
+    private void closeFile() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close event log {}", file, e);
+        }
+        writer = null;
+    }
+}
@@ -0,0 +1,178 @@
+package com.key.clipboarduse.main;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Orders history entries by frecency, a score combining how often and how recently they were
+ * used. Every use (a capture, a repeated copy, or picking the entry from history) adds a weight
+ * of one that halves every half-life.
+ * <p>
+ * Decaying every score as time passes would mean re-sorting on every cycle. Instead each score
+ * is kept in log space relative to a fixed epoch: an entry used at times t1..tn has the key
+ * log2(2^(t1/h) + ... + 2^(tn/h)), where h is the half-life. All scores decay by the same factor,
+ * so comparing keys orders entries exactly as their decayed scores would at any moment, and only
+ * the key of the entry that was used changes. Entries are kept in a tree sorted by key, so
+ * a use costs O(log n), and ranks are read by walking the tree from the top, which is cheap for
+ * the first few dozen ranks that cycling visits. Reads take the same lock as updates: a use
+ * removes the old rank before adding its replacement, so an unlocked walk could skip the entry
+ * or see it twice.
+ */
+public class FrecencyRanking {
+    private static final double LN_2 = Math.log(2);
+
+    private final double halfLifeNanos;
+    private final LongSupplier clock;
+    private final long epoch;
+    private final Map<HistoryEntry, Rank> ranks = new HashMap<>();
+    private final TreeSet<Rank> order = new TreeSet<>();
+
+    /**
+     * Creates an empty ranking.
+     * @param halfLifeNanos the time after which the weight of a use halves, in nanoseconds
+     */
+    public FrecencyRanking(long halfLifeNanos) {
+        this(halfLifeNanos, System::nanoTime);
+    }
+
+    /**
+     * Creates an empty ranking that reads time from the given clock, e.g. a simulated one.
+     * @param halfLifeNanos the time after which the weight of a use halves, in nanoseconds
+     * @param clock the clock, in nanoseconds
+     */
+    FrecencyRanking(long halfLifeNanos, LongSupplier clock) {
+        this.halfLifeNanos = halfLifeNanos;
+        this.clock = clock;
+        this.epoch = clock.getAsLong();
+    }
+
+    /**
+     * Adds a new entry with the weight of a single use now. Adding an entry that is already
+     * ranked counts as a use.
+     * @param entry the entry
+     */
+    public synchronized void add(HistoryEntry entry) {
+        Rank previous = ranks.get(entry);
+        double now = now();
+        put(entry, previous != null ? logAdd(previous.key, now) : now, previous);
+    }
+
+    /**
+     * Records a use of a ranked entry, moving it up the ranking.
+     * @param entry the entry
+     * @return false if the entry is not ranked, e.g. because it has left history
+     */
+    public synchronized boolean recordUse(HistoryEntry entry) {
+        Rank previous = ranks.get(entry);
+        if (previous == null) {
+            return false;
+        }
+        put(entry, logAdd(previous.key, now()), previous);
+        return true;
+    }
+
+    /**
+     * Removes an entry from the ranking.
+     * @param entry the entry
+     */
+    public synchronized void remove(HistoryEntry entry) {
+        Rank rank = ranks.remove(entry);
+        if (rank != null) {
+            order.remove(rank);
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public synchronized void clear() {
+        ranks.clear();
+        order.clear();
+    }
+
+    /**
+     * Returns the entry at a position in the ranking.
+     * @param position 1 for the highest ranked entry, 2 for the next, etc.
+     * @return the entry, or null if fewer entries are ranked
+     */
+    public synchronized HistoryEntry get(int position) {
+        if (position <= 0) {
+            return null;
+        }
+        Iterator<Rank> iterator = order.iterator();
+        for (int i = 1; iterator.hasNext(); i++) {
+            Rank rank = iterator.next();
+            if (i == position) {
+                return rank.entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the decayed score of an entry: the number of uses, each weighted by how many
+     * half-lives ago it happened.
+     * @param entry the entry
+     * @return the score, or 0 if the entry is not ranked
+     */
+    public synchronized double getScore(HistoryEntry entry) {
+        Rank rank = ranks.get(entry);
+        return rank == null ? 0 : Math.pow(2, rank.key - now());
+    }
+
+    /**
+     * Returns the number of ranked entries.
+     * @return the entry count
+     */
+    public synchronized int size() {
+        return ranks.size();
+    }
+
+    private void put(HistoryEntry entry, double key, Rank previous) {
+        if (previous != null) {
+            order.remove(previous);
+        }
+        Rank rank = new Rank(entry, key);
+        ranks.put(entry, rank);
+        order.add(rank);
+    }
+
+    /**
+     * Returns the current time in half-lives since the epoch, the log2 key of a use made now.
+     */
+    private double now() {
+        return (clock.getAsLong() - epoch) / halfLifeNanos;
+    }
+
+    /**
+     * Returns log2(2^a + 2^b) without overflowing for large keys.
+     */
+    private static double logAdd(double a, double b) {
+        double high = Math.max(a, b);
+        double low = Math.min(a, b);
+        return high + Math.log1p(Math.exp((low - high) * LN_2)) / LN_2;
+    }
+
+    /**
+     * An entry with the key it is sorted by. Keys never change while a rank is in the tree;
+     * a use replaces the rank. Equal keys are ordered by entry id, newest first.
+     */
+    private static final class Rank implements Comparable<Rank> {
+        private final HistoryEntry entry;
+        private final double key;
+
+        Rank(HistoryEntry entry, double key) {
+            this.entry = entry;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Rank other) {
+            int byKey = Double.compare(other.key, key);
+            return byKey != 0 ? byKey : Long.compare(other.entry.getId(), entry.getId());
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports clipboard history to, and imports it from, a newline-delimited JSON file, optionally
+ * gzip-compressed. Each line is one entry, oldest first, so importing a file replays the entries
+ * in the order they were copied:
+ * <pre>
+ * {"type":"text","text":"..."}
+ * {"type":"files","text":"/path/one\n/path/two"}
+ * {"type":"image","png":"iVBORw0KGgo..."}
+ * </pre>
+ * Both directions stream through a buffered {@link FileChannel}: export writes entry bodies as
+ * they are read from storage, so compressed and on-disk entries are never loaded whole, and
+ * import parses one entry at a time and hands them to history in bounded batches. Memory use
+ * therefore depends on the largest entry, not on the size of history or of the file.
+ */
+public final class HistoryArchive {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryArchive.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int IMPORT_BATCH = 256;
+    private static final long IMPORT_BATCH_CHARS = 4L * 1024 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final String TYPE_TEXT = "text";
+    private static final String TYPE_FILES = "files";
+    private static final String TYPE_IMAGE = "image";
+
+    private HistoryArchive() {
+    }
+
+    /**
+     * Writes entries to a file, replacing it only once the export is complete.
+     * @param clipboardManager where entry bodies are read from
+     * @param entries the entries, oldest first
+     * @param file the file to write
+     * @param gzip whether to gzip-compress the file
+     * @return the number of entries written
+     * @throws IOException if the file cannot be written
+     */
+    static long export(ClipboardManager clipboardManager, List<HistoryEntry> entries, Path file, boolean gzip)
+            throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            GZIPOutputStream compressed = gzip ? new FastGzipOutputStream(buffered) : null;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                compressed != null ? compressed : buffered, StandardCharsets.UTF_8), BUFFER_SIZE);
+            for (HistoryEntry entry : entries) {
+                if (entry.isLinked() && writeEntry(clipboardManager, entry, writer)) {
+                    written++;
+                }
+            }
+            writer.flush();
+            if (compressed != null) {
+                compressed.finish();
+            }
+            buffered.flush();
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * Writes one entry as a line. Text is copied from the entry body a chunk at a time.
+     * @return false if the entry could not be read and was skipped
+     */
+    private static boolean writeEntry(ClipboardManager clipboardManager, HistoryEntry entry, Writer writer)
+            throws IOException {
+        if (entry.getContentType() == HistoryEntry.ContentType.IMAGE) {
+            byte[] png = clipboardManager.getImageData(entry);
+            if (png == null) {
+                return false;
+            }
+            writer.write("{\"type\":\"" + TYPE_IMAGE + "\",\"png\":\"");
+            writer.write(Base64.getEncoder().encodeToString(png));
+            writer.write("\"}\n");
+            return true;
+        }
+        String type = entry.getContentType() == HistoryEntry.ContentType.FILE_LIST ? TYPE_FILES : TYPE_TEXT;
+        writer.write("{\"type\":\"" + type + "\",\"text\":\"");
+        String text = entry.getCachedText();
+        if (text != null) {
+            writeEscaped(text, text.length(), writer);
+        } else {
+            char[] chunk = new char[8192];
+            try (Reader reader = new InputStreamReader(clipboardManager.openText(entry), StandardCharsets.UTF_8)) {
+                int read;
+                while ((read = reader.read(chunk)) >= 0) {
+                    writeEscaped(chunk, read, writer);
+                }
+            }
+        }
+        writer.write("\"}\n");
+        return true;
+    }
+
+    /**
+     * Writes text as the inside of a JSON string, copying runs that need no escaping as they are.
+     */
+    private static void writeEscaped(String text, int length, Writer writer) throws IOException {
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            String escape = escape(text.charAt(i));
+            if (escape != null) {
+                writer.write(text, run, i - run);
+                writer.write(escape);
+                run = i + 1;
+            }
+        }
+        writer.write(text, run, length - run);
+    }
+
+    private static void writeEscaped(char[] text, int length, Writer writer) throws IOException {
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            String escape = escape(text[i]);
+            if (escape != null) {
+                writer.write(text, run, i - run);
+                writer.write(escape);
+                run = i + 1;
+            }
+        }
+        writer.write(text, run, length - run);
+    }
+
+    /**
+     * Returns the JSON escape sequence of a character, or null if it is written as it is.
+     */
+    private static String escape(char c) {
+        switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            default:
+                return c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+        }
+    }
+
+    /**
+     * Reads entries from a file, gzip-compressed or not, and passes them on in batches of
+     * bounded size. Lines of unknown type are skipped.
+     * @param file the file to read
+     * @param importer adds a batch to history and returns how many entries changed it
+     * @return the number of entries read and how many changed history
+     * @throws IOException if the file cannot be read or is not a history export
+     */
+    static Summary importFrom(Path file, ToIntFunction<List<Item>> importer) throws IOException {
+        int entries = 0;
+        int changed = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            in.mark(2);
+            int magic = in.read() | in.read() << 8;
+            in.reset();
+            if (magic == GZIP_MAGIC) {
+                in = new GZIPInputStream(in, BUFFER_SIZE);
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                Parser parser = new Parser(reader);
+                List<Item> batch = new ArrayList<>(IMPORT_BATCH);
+                long batchChars = 0;
+                Map<String, String> fields;
+                while ((fields = parser.next()) != null) {
+                    Item item = toItem(fields, parser.objectLine);
+                    if (item == null) {
+                        continue;
+                    }
+                    batch.add(item);
+                    entries++;
+                    batchChars += item.text.length();
+                    if (batch.size() >= IMPORT_BATCH || batchChars >= IMPORT_BATCH_CHARS) {
+                        changed += importer.applyAsInt(batch);
+                        batch.clear();
+                        batchChars = 0;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    changed += importer.applyAsInt(batch);
+                }
+            }
+        }
+        return new Summary(entries, changed);
+    }
+
+    private static Item toItem(Map<String, String> fields, int line) throws IOException {
+        String type = fields.get("type");
+        if (TYPE_TEXT.equals(type) || TYPE_FILES.equals(type)) {
+            String text = fields.get("text");
+            if (text == null) {
+                throw new IOException("History entry on line " + line + " has no text");
+            }
+            return new Item(TYPE_TEXT.equals(type) ? HistoryEntry.ContentType.TEXT : HistoryEntry.ContentType.FILE_LIST,
+                text, null);
+        }
+        if (TYPE_IMAGE.equals(type)) {
+            try {
+                byte[] png = Base64.getDecoder().decode(String.valueOf(fields.get("png")));
+                BufferedImage image = ImageCodec.toArgb(ImageCodec.decode(png));
+                if (image != null) {
+                    return new Item(HistoryEntry.ContentType.IMAGE,
+                        ImageCodec.describe(image.getWidth(), image.getHeight()), image);
+                }
+            } catch (IllegalArgumentException | IOException e) {
+                logger.warn("Skipped unreadable image on line {} of history import", line, e);
+                return null;
+            }
+        }
+        logger.warn("Skipped history entry of unknown type {} on line {}", type, line);
+        return null;
+    }
+
+    /**
+     * Gzip at the fastest deflate level. Clipboard text is repetitive enough that the default
+     * level spends most of its time on long match chains for little gain: on word-like text it
+     * is five to six times slower for files about 15% smaller.
+     */
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+        FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    /**
+     * An imported entry, not yet added to history.
+     */
+    static final class Item {
+        final HistoryEntry.ContentType contentType;
+        final String text;
+        final BufferedImage image;
+
+        Item(HistoryEntry.ContentType contentType, String text, BufferedImage image) {
+            this.contentType = contentType;
+            this.text = text;
+            this.image = image;
+        }
+    }
+
+    /**
+     * What an import did.
+     */
+    public static final class Summary {
+        private final int entries;
+        private final int changed;
+
+        public Summary(int entries, int changed) {
+            this.entries = entries;
+            this.changed = changed;
+        }
+
+        /**
+         * Returns the number of entries read from the file.
+         * @return the entry count
+         */
+        public int getEntries() {
+            return entries;
+        }
+
+        /**
+         * Returns how many entries changed history; the others were already the most recent entry.
+         * @return the count of added or moved entries
+         */
+        public int getChanged() {
+            return changed;
+        }
+    }
+
+    /**
+     * Reads one flat JSON object after another, with string values only; other values are
+     * skipped. Objects may span lines, but an export writes one per line. Characters are read
+     * through the parser's own buffer, which avoids a synchronized call per character.
+     */
+    private static final class Parser {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final StringBuilder value = new StringBuilder();
+        private int position;
+        private int limit;
+        private int line = 1;
+        private int objectLine;
+        private int peeked = -2;
+
+        Parser(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Returns the next object, or null at the end of the file.
+         */
+        Map<String, String> next() throws IOException {
+            int c = skipWhitespace();
+            if (c < 0) {
+                return null;
+            }
+            objectLine = line;
+            expect(c, '{');
+            Map<String, String> fields = new HashMap<>();
+            c = skipWhitespace();
+            if (c == '}') {
+                return fields;
+            }
+            while (true) {
+                expect(c, '"');
+                String key = readString();
+                expect(skipWhitespace(), ':');
+                c = skipWhitespace();
+                if (c == '"') {
+                    fields.put(key, readString());
+                } else {
+                    skipLiteral(c);
+                }
+                c = skipWhitespace();
+                if (c == '}') {
+                    return fields;
+                }
+                expect(c, ',');
+                c = skipWhitespace();
+            }
+        }
+
+        private String readString() throws IOException {
+            value.setLength(0);
+            while (true) {
+                int c = read();
+                if (c < 0) {
+                    throw malformed("unterminated string");
+                }
+                if (c == '"') {
+                    String result = value.toString();
+                    if (value.capacity() > BUFFER_SIZE) {
+                        value.setLength(0);
+                        value.trimToSize();
+                    }
+                    return result;
+                }
+                if (c != '\\') {
+                    value.append((char) c);
+                    continue;
+                }
+                c = read();
+                switch (c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append((char) c);
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw malformed("bad unicode escape");
+                            }
+                            code = code << 4 | digit;
+                        }
+                        value.append((char) code);
+                        break;
+                    default:
+                        throw malformed("bad escape");
+                }
+            }
+        }
+
+        /**
+         * Skips a number, true, false or null.
+         */
+        private void skipLiteral(int c) throws IOException {
+            if (c < 0 || ",}\"{[".indexOf(c) >= 0) {
+                throw malformed("unsupported value");
+            }
+            do {
+                c = read();
+            } while (c >= 0 && ",}".indexOf(c) < 0 && !Character.isWhitespace(c));
+            peeked = c;
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c >= 0 && Character.isWhitespace(c));
+            return c;
+        }
+
+        private int read() throws IOException {
+            int c = peeked;
+            if (c != -2) {
+                peeked = -2;
+                return c;
+            }
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            c = buffer[position++];
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+
+        private void expect(int c, char expected) throws IOException {
+            if (c != expected) {
+                throw malformed("expected '" + expected + "'");
+            }
+        }
+
+        private IOException malformed(String problem) {
+            return new IOException("Malformed history export on line " + objectLine + ": " + problem);
+        }
+    }
+}
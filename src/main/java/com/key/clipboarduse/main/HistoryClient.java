@@ -0,0 +1,264 @@
+package com.key.clipboarduse.main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Blocking client for the {@link HistoryServer}. Not thread-safe; use one client per thread.
+ */
+public class HistoryClient implements Closeable {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(5);
+
+    /**
+     * Connects to the server on the loopback interface and authenticates.
+     * @param endpoint the server endpoint
+     * @throws IOException if the server cannot be reached or rejects the token
+     */
+    public HistoryClient(HistoryProtocol.Endpoint endpoint) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), endpoint.getPort()));
+        try {
+            channel.socket().setTcpNoDelay(true);
+            byte[] token = endpoint.getToken();
+            send(ByteBuffer.allocate(5 + token.length).putInt(1 + token.length).put(HistoryProtocol.OP_AUTH).put(token));
+            skip(readResponse());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Connects using the endpoint file written by the running application.
+     * @param endpointFile the endpoint file
+     * @return the connected client
+     * @throws IOException if the file cannot be read or the server cannot be reached
+     */
+    public static HistoryClient connect(Path endpointFile) throws IOException {
+        return new HistoryClient(HistoryProtocol.Endpoint.read(endpointFile));
+    }
+
+    /**
+     * Fetches a history item and writes it to a channel as it arrives, without buffering it whole.
+     * @param offsetFromEnd 1 for most recent, 2 for second most recent, etc.
+     * @param target where to write the UTF-8 text
+     * @return the number of bytes written, or -1 if there is no such item
+     * @throws IOException if the request fails
+     */
+    public long get(int offsetFromEnd, WritableByteChannel target) throws IOException {
+        send(ByteBuffer.allocate(9).putInt(5).put(HistoryProtocol.OP_GET).putInt(offsetFromEnd));
+        long length;
+        try {
+            length = readResponse();
+        } catch (NotFoundException e) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(COPY_BUFFER_SIZE, Math.max(length, 1)));
+        long remaining = length;
+        while (remaining > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            readFully(buffer);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            remaining -= buffer.limit();
+        }
+        return length;
+    }
+
+    /**
+     * Fetches a history item.
+     * @param offsetFromEnd 1 for most recent, 2 for second most recent, etc.
+     * @return the text, or null if there is no such item
+     * @throws IOException if the request fails
+     */
+    public String get(int offsetFromEnd) throws IOException {
+        send(ByteBuffer.allocate(9).putInt(5).put(HistoryProtocol.OP_GET).putInt(offsetFromEnd));
+        try {
+            return new String(readBytes(readResponse()), StandardCharsets.UTF_8);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lists consecutive history items, newest first.
+     * @param start offset of the first item, 1 for the most recent
+     * @param count the maximum number of items
+     * @param maxChars characters of each item to return, or 0 for whole items
+     * @return the items; fewer than requested if whole items fill the response size limit
+     * @throws IOException if the request fails
+     */
+    public List<Item> list(int start, int count, int maxChars) throws IOException {
+        send(ByteBuffer.allocate(17).putInt(13).put(HistoryProtocol.OP_LIST).putInt(start).putInt(count).putInt(maxChars));
+        readResponse();
+        return readItems();
+    }
+
+    /**
+     * Searches history.
+     * @param query the text to look for
+     * @param limit the maximum number of results
+     * @param maxChars characters of each item to return, or 0 for whole items
+     * @return the matching items, newest first; fewer than requested if whole items fill the
+     *         response size limit
+     * @throws IOException if the request fails
+     */
+    public List<Item> search(String query, int limit, int maxChars) throws IOException {
+        byte[] encoded = query.getBytes(StandardCharsets.UTF_8);
+        send(ByteBuffer.allocate(13 + encoded.length).putInt(9 + encoded.length)
+            .put(HistoryProtocol.OP_SEARCH).putInt(limit).putInt(maxChars).put(encoded));
+        readResponse();
+        return readItems();
+    }
+
+    /**
+     * Adds text to history as if it had been copied.
+     * @param text the text to add
+     * @return true if history changed
+     * @throws IOException if the request fails
+     */
+    public boolean push(String text) throws IOException {
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        send(ByteBuffer.allocate(5).putInt(1 + encoded.length).put(HistoryProtocol.OP_PUSH), ByteBuffer.wrap(encoded));
+        readResponse();
+        return readBytes(1)[0] != 0;
+    }
+
+    /**
+     * Has the application export its history to a file.
+     * @param file where the application writes the export; relative paths are resolved here
+     * @param gzip whether to gzip-compress the file
+     * @return the number of entries exported
+     * @throws IOException if the request fails or the file cannot be written
+     */
+    public long exportHistory(Path file, boolean gzip) throws IOException {
+        byte[] encoded = file.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+        send(ByteBuffer.allocate(6).putInt(2 + encoded.length).put(HistoryProtocol.OP_EXPORT).put((byte) (gzip ? 1 : 0)),
+            ByteBuffer.wrap(encoded));
+        readResponse();
+        return ByteBuffer.wrap(readBytes(8)).getLong();
+    }
+
+    /**
+     * Has the application import a file written by {@link #exportHistory(Path, boolean)}.
+     * @param file the export to read; relative paths are resolved here
+     * @return the number of entries read and how many changed history
+     * @throws IOException if the request fails, or the file is missing or malformed
+     */
+    public HistoryArchive.Summary importHistory(Path file) throws IOException {
+        byte[] encoded = file.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+        send(ByteBuffer.allocate(5).putInt(1 + encoded.length).put(HistoryProtocol.OP_IMPORT), ByteBuffer.wrap(encoded));
+        readResponse();
+        ByteBuffer summary = ByteBuffer.wrap(readBytes(8));
+        return new HistoryArchive.Summary(summary.getInt(), summary.getInt());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A history item returned by list or search.
+     */
+    public static final class Item {
+        private final int offsetFromEnd;
+        private final String text;
+
+        Item(int offsetFromEnd, String text) {
+            this.offsetFromEnd = offsetFromEnd;
+            this.text = text;
+        }
+
+        public int getOffsetFromEnd() {
+            return offsetFromEnd;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    private List<Item> readItems() throws IOException {
+        int count = ByteBuffer.wrap(readBytes(4)).getInt();
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ByteBuffer itemHeader = ByteBuffer.wrap(readBytes(8));
+            int offset = itemHeader.getInt();
+            items.add(new Item(offset, new String(readBytes(itemHeader.getInt()), StandardCharsets.UTF_8)));
+        }
+        return items;
+    }
+
+    private void send(ByteBuffer... buffers) throws IOException {
+        buffers[0].flip();
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /**
+     * Reads a response header.
+     * @return the payload length
+     * @throws NotFoundException if the item does not exist; its message has been consumed
+     * @throws IOException for other error statuses, with the server's message
+     */
+    private long readResponse() throws IOException {
+        header.clear();
+        readFully(header);
+        int length = header.getInt(0) - 1;
+        byte status = header.get(4);
+        if (status == HistoryProtocol.STATUS_OK) {
+            return length;
+        }
+        String message = new String(readBytes(length), StandardCharsets.UTF_8);
+        if (status == HistoryProtocol.STATUS_NOT_FOUND) {
+            throw new NotFoundException(message);
+        }
+        throw new IOException("History server error " + status + ": " + message);
+    }
+
+    private void skip(long length) throws IOException {
+        readBytes((int) length);
+    }
+
+    private byte[] readBytes(long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        readFully(buffer);
+        return buffer.array();
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("History server closed the connection");
+            }
+        }
+    }
+
+    private static final class NotFoundException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        NotFoundException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.key.clipboarduse.main;
+
+/**
+ * The popup that shows clipboard history, as seen by {@link KeyboardEventHandler}.
+ * Implemented by {@link ClipboardWindow}; headless stand-ins can take its place in load tests.
+ */
+public interface HistoryDisplay {
+
+    /**
+     * Shows a history item while the user cycles with Win+Shift, revealing the popup if needed.
+     * @param position the place of the item in cycle order (see {@link ClipboardManager#getCycleEntry(int)}),
+     *                 1 for the first
+     */
+    void showHistoryItem(int position);
+
+    /**
+     * Opens the popup in search mode.
+     */
+    void openSearch();
+
+    /**
+     * Returns whether search mode is open.
+     * @return true while search mode is open
+     */
+    boolean isSearchActive();
+
+    /**
+     * Shows or hides the popup.
+     * @param visible true to show
+     */
+    void setVisible(boolean visible);
+}
@@ -0,0 +1,209 @@
+package com.key.clipboarduse.main;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * A single clipboard history entry.
+ * Depending on its {@link Tier}, the body is held as a plain string, as compressed bytes, or
+ * only in the history log. Bodies read from the log are kept softly reachable once loaded.
+ * Images are held PNG-encoded; their text is a short description such as {@code Image 800 × 600}.
+ * Under memory pressure, bodies that are also stored in a log are spilled: the entry drops them
+ * and becomes {@link Tier#DISK}, keeping only its log record.
+ */
+public class HistoryEntry extends HistoryRingBuffer.Node {
+
+    /**
+     * Where the body of an entry is kept.
+     */
+    public enum Tier {
+        /** Plain string on the heap. */
+        HEAP,
+        /** Deflate-compressed UTF-8 bytes, or an encoded image, on the heap. */
+        COMPRESSED,
+        /** Only in the history log; read on access. */
+        DISK
+    }
+
+    /**
+     * What was copied.
+     */
+    public enum ContentType {
+        /** Text; the body is the text itself. */
+        TEXT,
+        /** An image; the body is PNG-encoded. */
+        IMAGE,
+        /** Copied files; the body is their absolute paths, one per line. */
+        FILE_LIST
+    }
+
+    private final long id;
+    private final ContentType contentType;
+    private final long hash;
+    private final int storedBytes;
+    private volatile String text;
+    private volatile byte[] compressed;
+    private volatile SoftReference<String> loadedText;
+    private volatile HistoryLog.Record record;
+    int searchDocument = -1;
+
+    private HistoryEntry(long id, ContentType contentType, long hash, int storedBytes, String text, byte[] compressed,
+            HistoryLog.Record record) {
+        this.id = id;
+        this.contentType = contentType;
+        this.hash = hash;
+        this.storedBytes = storedBytes;
+        this.text = text;
+        this.compressed = compressed;
+        this.record = record;
+    }
+
+    /**
+     * Creates an entry holding its text as a plain string.
+     * @param id the entry id
+     * @param text the captured text
+     * @param hash the content hash of the text
+     * @param encodedLength the UTF-8 length of the text
+     * @return the entry
+     */
+    public static HistoryEntry plain(long id, String text, long hash, int encodedLength) {
+        return new HistoryEntry(id, ContentType.TEXT, hash, encodedLength, text, null, null);
+    }
+
+    /**
+     * Creates an entry for copied files.
+     * @param id the entry id
+     * @param paths the absolute paths, one per line
+     * @param hash the content hash of the file list
+     * @param encodedLength the UTF-8 length of the paths
+     * @return the entry
+     */
+    public static HistoryEntry fileList(long id, String paths, long hash, int encodedLength) {
+        return new HistoryEntry(id, ContentType.FILE_LIST, hash, encodedLength, paths, null, null);
+    }
+
+    /**
+     * Creates an entry holding an encoded image.
+     * @param id the entry id
+     * @param hash the content hash of the image pixels
+     * @param png the PNG-encoded image
+     * @param description the text shown for the image
+     * @return the entry
+     */
+    public static HistoryEntry image(long id, long hash, byte[] png, String description) {
+        HistoryEntry entry = new HistoryEntry(id, ContentType.IMAGE, hash, png.length, null, png, null);
+        entry.cacheLoadedText(description);
+        return entry;
+    }
+
+    /**
+     * Creates an entry holding its text compressed.
+     * @param id the entry id
+     * @param hash the content hash of the uncompressed text
+     * @param compressed the compressed body, as produced by {@link HistoryStorage}
+     * @return the entry
+     */
+    public static HistoryEntry compressed(long id, long hash, byte[] compressed) {
+        return new HistoryEntry(id, ContentType.TEXT, hash, compressed.length, null, compressed, null);
+    }
+
+    /**
+     * Creates an entry for a record restored from the history log. The body is not read.
+     * @param record the log record
+     * @return the restored entry
+     */
+    public static HistoryEntry restored(HistoryLog.Record record) {
+        return new HistoryEntry(record.getId(), contentType(record.getKind()), record.getHash(), record.getLength(),
+            null, null, record);
+    }
+
+    private static ContentType contentType(byte kind) {
+        switch (kind) {
+            case HistoryLog.KIND_IMAGE:
+                return ContentType.IMAGE;
+            case HistoryLog.KIND_FILE_LIST:
+                return ContentType.FILE_LIST;
+            default:
+                return ContentType.TEXT;
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public ContentType getContentType() {
+        return contentType;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public Tier getTier() {
+        if (text != null) {
+            return Tier.HEAP;
+        }
+        return compressed != null ? Tier.COMPRESSED : Tier.DISK;
+    }
+
+    /**
+     * Returns the size of the stored body: UTF-8 length for plain text, compressed length otherwise.
+     * @return the stored size in bytes
+     */
+    public int getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * Returns the text if it is available without decompressing or reading from disk.
+     * @return the text, or null if it must be loaded
+     */
+    public String getCachedText() {
+        if (text != null) {
+            return text;
+        }
+        SoftReference<String> loaded = loadedText;
+        return loaded != null ? loaded.get() : null;
+    }
+
+    /**
+     * Keeps text loaded from the history log until memory runs short.
+     * @param loaded the loaded text
+     */
+    void cacheLoadedText(String loaded) {
+        this.loadedText = new SoftReference<>(loaded);
+    }
+
+    /**
+     * Drops the body from the heap, leaving it to be read from the entry's log record. Text that
+     * was loaded back earlier is dropped too, so the heap is released without waiting for the
+     * collector to clear soft references. Readers that see the entry change tier midway fall
+     * back to the log record, which is set before the body is dropped.
+     * @return false if the entry has no log record to reload its body from
+     */
+    boolean spill() {
+        if (record == null) {
+            return false;
+        }
+        text = null;
+        compressed = null;
+        loadedText = null;
+        return true;
+    }
+
+    /**
+     * Returns the compressed body of a {@link Tier#COMPRESSED} entry: deflated text or a PNG image.
+     * @return the compressed bytes, or null for other tiers
+     */
+    byte[] getCompressed() {
+        return compressed;
+    }
+
+    public HistoryLog.Record getRecord() {
+        return record;
+    }
+
+    void setRecord(HistoryLog.Record record) {
+        this.record = record;
+    }
+}
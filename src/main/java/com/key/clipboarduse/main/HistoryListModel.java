@@ -0,0 +1,218 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The whole clipboard history as a list model, most recent first, for the history browser.
+ * Rows are looked up in the {@link ClipboardManager} ring buffer by offset when they are
+ * painted, so opening the browser copies nothing however long history is. The size is a
+ * snapshot taken by {@link #refresh()}, which fires a change event when history has changed.
+ * <p>
+ * Each row shows a one-line preview, computed once and kept in a bounded LRU cache. Previews of
+ * text on the heap are computed when first painted; entries that are compressed or on disk get
+ * theirs on a background thread, and the row is repainted when it is ready. Only the most
+ * recently requested previews are loaded, so flinging through a long history does not queue
+ * work for rows that have already scrolled away.
+ */
+public class HistoryListModel extends AbstractListModel<HistoryEntry> {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryListModel.class);
+    private static final long serialVersionUID = 1L;
+
+    private static final int CACHED_PREVIEWS = 4096;
+    private static final int PENDING_PREVIEWS = 128;
+    private static final String LOADING_PREVIEW = "\u2026";
+
+    private final ClipboardManager clipboardManager;
+    private final int previewLength;
+    private final Executor loader;
+    private final Map<HistoryEntry, String> previews = new LinkedHashMap<HistoryEntry, String>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<HistoryEntry, String> eldest) {
+            return size() > CACHED_PREVIEWS;
+        }
+    };
+    private final Deque<HistoryEntry> pending = new ArrayDeque<>();
+    private boolean loading;
+    private int size;
+    private HistoryEntry newest;
+
+    /**
+     * Creates the model; call {@link #refresh()} before showing it.
+     * @param clipboardManager the history to show
+     * @param previewLength the most characters shown per row
+     * @param loader runs preview loads off the event dispatch thread
+     */
+    public HistoryListModel(ClipboardManager clipboardManager, int previewLength, Executor loader) {
+        this.clipboardManager = clipboardManager;
+        this.previewLength = previewLength;
+        this.loader = loader;
+    }
+
+    /**
+     * Takes a new snapshot of the history size and fires a change event if history changed
+     * since the last one. Must be called on the EDT.
+     */
+    public void refresh() {
+        int currentSize = clipboardManager.getHistorySize();
+        HistoryEntry currentNewest = clipboardManager.getHistoryEntry(1);
+        if (currentSize == size && currentNewest == newest) {
+            return;
+        }
+        int previousSize = size;
+        size = currentSize;
+        newest = currentNewest;
+        if (currentSize < previousSize) {
+            fireIntervalRemoved(this, currentSize, previousSize - 1);
+        } else if (currentSize > previousSize) {
+            fireIntervalAdded(this, previousSize, currentSize - 1);
+        }
+        if (currentSize > 0) {
+            fireContentsChanged(this, 0, currentSize - 1);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the entry shown in a row. Rows follow history as it is now, so a row may be
+     * empty for a moment after history shrank and before the next {@link #refresh()}.
+     * @param index the row, 0 for the most recent entry
+     * @return the entry, or null if history no longer has that many entries
+     */
+    @Override
+    public HistoryEntry getElementAt(int index) {
+        return clipboardManager.getHistoryEntry(index + 1);
+    }
+
+    /**
+     * Returns the one-line preview of an entry, starting to load it if it is not ready.
+     * Must be called on the EDT.
+     * @param entry the entry in a row
+     * @return the preview, or a placeholder while it loads
+     */
+    public String getPreview(HistoryEntry entry) {
+        String preview;
+        synchronized (previews) {
+            preview = previews.get(entry);
+        }
+        if (preview != null) {
+            return preview;
+        }
+        String text = entry.getCachedText();
+        if (text != null) {
+            preview = preview(text, previewLength);
+            putPreview(entry, preview);
+            return preview;
+        }
+        requestPreview(entry);
+        return LOADING_PREVIEW;
+    }
+
+    /**
+     * Caches a preview computed elsewhere, e.g. for a search result.
+     * @param entry the entry
+     * @param preview the one-line preview
+     */
+    public void putPreview(HistoryEntry entry, String preview) {
+        synchronized (previews) {
+            previews.put(entry, preview);
+        }
+    }
+
+    /**
+     * Returns the cached preview of an entry without loading it.
+     * @param entry the entry
+     * @return the preview, or null if it is not cached
+     */
+    public String getCachedPreview(HistoryEntry entry) {
+        synchronized (previews) {
+            return previews.get(entry);
+        }
+    }
+
+    private void requestPreview(HistoryEntry entry) {
+        synchronized (pending) {
+            if (pending.contains(entry)) {
+                return;
+            }
+            pending.addLast(entry);
+            if (pending.size() > PENDING_PREVIEWS) {
+                pending.removeFirst();
+            }
+            if (loading) {
+                return;
+            }
+            loading = true;
+        }
+        try {
+            loader.execute(this::loadPending);
+        } catch (RejectedExecutionException e) {
+            synchronized (pending) {
+                loading = false;
+                pending.clear();
+            }
+            logger.debug("Preview loader is shut down", e);
+        }
+    }
+
+    /**
+     * Loads requested previews, newest request first, until none are left.
+     */
+    private void loadPending() {
+        while (true) {
+            HistoryEntry entry;
+            synchronized (pending) {
+                entry = pending.pollLast();
+                if (entry == null) {
+                    loading = false;
+                    return;
+                }
+            }
+            // Read one character more than shown, so the preview knows whether to add an ellipsis
+            putPreview(entry, preview(clipboardManager.getTextPrefix(entry, previewLength + 1), previewLength));
+            SwingUtilities.invokeLater(this::previewsLoaded);
+        }
+    }
+
+    /**
+     * Repaints the rows after previews were loaded. Rows may have shifted since the preview was
+     * requested, and with fixed row sizes a change event costs the same for any number of rows.
+     */
+    private void previewsLoaded() {
+        if (size > 0) {
+            fireContentsChanged(this, 0, size - 1);
+        }
+    }
+
+    /**
+     * Builds a single-line preview: whitespace becomes spaces and long text is cut with an ellipsis.
+     * @param text the entry text
+     * @param maxLength the most characters kept
+     * @return the preview
+     */
+    static String preview(String text, int maxLength) {
+        int end = Math.min(text.length(), maxLength);
+        StringBuilder builder = new StringBuilder(end + 1);
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            builder.append(Character.isWhitespace(c) ? ' ' : c);
+        }
+        if (end < text.length()) {
+            builder.append('\u2026');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,655 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Durable, append-only store for clipboard history.
+ * Entry bodies are appended to segment files ({@code segment-NNNNNN.dat}) and every change is
+ * journaled as a fixed-size record in a compact offset index ({@code history.idx}). Opening the
+ * log only replays the index; bodies are read on demand. Segments whose entries have all been
+ * evicted are deleted, mostly-dead segments are compacted into the active one, and the index is
+ * rewritten once it holds far more records than live entries.
+ */
+public class HistoryLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryLog.class);
+
+    /** Body kind for UTF-8 encoded text. */
+    public static final byte KIND_TEXT = 0;
+    /** Body kind for text compressed by {@link HistoryStorage}. */
+    public static final byte KIND_DEFLATED_TEXT = 1;
+    /** Body kind for a PNG-encoded image. */
+    public static final byte KIND_IMAGE = 2;
+    /** Body kind for a UTF-8 list of file paths, one per line. */
+    public static final byte KIND_FILE_LIST = 3;
+
+    private static final String INDEX_FILE = "history.idx";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int INDEX_MAGIC = 0x434C5049; // "CLPI"
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER_SIZE = 8;
+    private static final int INDEX_RECORD_SIZE = 32;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_RELOCATE = 3;
+    private static final byte OP_MOVE_TO_END = 4;
+    private static final int MIN_INDEX_RECORDS_BEFORE_COMPACTION = 1024;
+    private static final int SEGMENT_COMPACTION_RATIO = 4;
+    private static final int INDEX_BATCH_RECORDS = 64;
+    private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Location and metadata of one live entry in the log.
+     * The segment and offset change when the log compacts the segment holding the entry.
+     */
+    public static final class Record {
+        private final long id;
+        private final byte kind;
+        private final long hash;
+        private final int length;
+        private int segment;
+        private int offset;
+
+        private Record(long id, byte kind, long hash, int length, int segment, int offset) {
+            this.id = id;
+            this.kind = kind;
+            this.hash = hash;
+            this.length = length;
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public byte getKind() {
+            return kind;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    private static final class Segment {
+        private final int number;
+        private final Path path;
+        private final FileChannel channel;
+        private final Set<Record> records = new HashSet<>();
+        private long size;
+        private long liveBytes;
+
+        private Segment(int number, Path path, FileChannel channel, long size) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final LinkedHashMap<Long, Record> liveRecords = new LinkedHashMap<>();
+    private final ByteBuffer indexBuffer = ByteBuffer.allocate(INDEX_BATCH_RECORDS * INDEX_RECORD_SIZE);
+    private boolean batching;
+    private FileChannel indexChannel;
+    private long indexRecordCount;
+    private long nextId = 1;
+
+    private HistoryLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens (or creates) the log in the given directory and replays its index.
+     * @param directory the directory holding the index and segment files
+     * @param segmentSize the size in bytes after which a new segment is started
+     * @return the opened log
+     * @throws IOException if the directory or index cannot be read
+     */
+    public static HistoryLog open(Path directory, int segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        HistoryLog log = new HistoryLog(directory, segmentSize);
+        try {
+            log.openSegments();
+            log.replayIndex();
+        } catch (IOException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+
+    /**
+     * Returns the live records in history order, oldest first.
+     * @return a snapshot of the live records
+     */
+    public synchronized List<Record> getLiveRecords() {
+        return new ArrayList<>(liveRecords.values());
+    }
+
+    /**
+     * Returns the number of live entries in the log.
+     * @return the live entry count
+     */
+    public synchronized int size() {
+        return liveRecords.size();
+    }
+
+    /**
+     * Returns the id to assign to the next appended entry.
+     * @return the next unused entry id
+     */
+    public synchronized long nextId() {
+        return nextId;
+    }
+
+    /**
+     * Appends an entry body and journals it in the index.
+     * @param id the entry id
+     * @param kind the body kind
+     * @param hash the content hash of the entry
+     * @param body the encoded body
+     * @return the record describing the stored entry
+     * @throws IOException if the body or index record cannot be written
+     */
+    public synchronized Record append(long id, byte kind, long hash, byte[] body) throws IOException {
+        Segment segment = writableSegment(body.length);
+        int offset = (int) segment.size;
+        writeFully(segment.channel, ByteBuffer.wrap(body), offset);
+        segment.size += body.length;
+
+        Record record = new Record(id, kind, hash, body.length, segment.number, offset);
+        track(segment, record);
+        liveRecords.put(id, record);
+        nextId = Math.max(nextId, id + 1);
+        writeIndexRecord(OP_ADD, record);
+        return record;
+    }
+
+    /**
+     * Reads the body of a live entry.
+     * @param record the entry record
+     * @return the encoded body
+     * @throws IOException if the segment cannot be read
+     */
+    public byte[] read(Record record) throws IOException {
+        return read(record, record.length);
+    }
+
+    /**
+     * Reads the start of the body of a live entry, e.g. a header.
+     * @param record the entry record
+     * @param maxLength the maximum number of bytes to read
+     * @return the first bytes of the body
+     * @throws IOException if the segment cannot be read
+     */
+    public synchronized byte[] read(Record record, int maxLength) throws IOException {
+        Segment segment = segments.get(record.segment);
+        if (segment == null) {
+            throw new IOException("Segment " + record.segment + " for entry " + record.id + " is missing");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(maxLength, record.length));
+        readFully(segment.channel, buffer, record.offset);
+        return buffer.array();
+    }
+
+    /**
+     * Reads part of the body of a live entry into a buffer, filling it as far as the body allows.
+     * @param record the entry record
+     * @param position the first byte of the body to read
+     * @param target the buffer to read into
+     * @return the number of bytes read, or -1 if the position is at the end of the body
+     * @throws IOException if the segment is missing or cannot be read
+     */
+    public synchronized int read(Record record, long position, ByteBuffer target) throws IOException {
+        Segment segment = segments.get(record.segment);
+        if (segment == null) {
+            throw new IOException("Segment " + record.segment + " for entry " + record.id + " is missing");
+        }
+        if (position >= record.length) {
+            return -1;
+        }
+        int limit = target.limit();
+        int length = (int) Math.min(target.remaining(), record.length - position);
+        target.limit(target.position() + length);
+        try {
+            readFully(segment.channel, target, record.offset + position);
+        } finally {
+            target.limit(limit);
+        }
+        return length;
+    }
+
+    /**
+     * Opens a stream over the body of a live entry. The body is read in chunks of at most
+     * {@value #STREAM_CHUNK_SIZE} bytes, each under the log lock, so streaming a huge body
+     * neither holds it in memory nor blocks appends for long. Compaction may move the body
+     * between chunks; every chunk is read from the current location.
+     * @param record the entry record
+     * @param position the first byte of the body to read
+     * @return the stream
+     */
+    public InputStream openStream(Record record, int position) {
+        return new BodyInputStream(record, position);
+    }
+
+    /**
+     * Transfers part of a live entry's body from its segment file to a channel without
+     * copying it through the heap.
+     * @param record the entry record
+     * @param position the first byte of the body to transfer
+     * @param target the channel to write to
+     * @return the number of bytes transferred
+     * @throws IOException if the segment is missing or the transfer fails
+     */
+    public synchronized long transferTo(Record record, long position, WritableByteChannel target) throws IOException {
+        Segment segment = segments.get(record.segment);
+        if (segment == null) {
+            throw new IOException("Segment " + record.segment + " for entry " + record.id + " is missing");
+        }
+        return segment.channel.transferTo(record.offset + position, record.length - position, target);
+    }
+
+    /**
+     * Moves an existing entry to the newest end of the history order without rewriting its body.
+     * @param record the entry record
+     * @throws IOException if the index cannot be updated
+     */
+    public synchronized void moveToEnd(Record record) throws IOException {
+        if (liveRecords.remove(record.id) == null) {
+            return;
+        }
+        liveRecords.put(record.id, record);
+        writeIndexRecord(OP_MOVE_TO_END, record);
+        compactIndexIfNeeded();
+    }
+
+    /**
+     * Removes an entry from the log, deleting or compacting its segment when it becomes mostly dead.
+     * @param record the entry record
+     * @throws IOException if the index cannot be updated
+     */
+    public synchronized void remove(Record record) throws IOException {
+        if (liveRecords.remove(record.id) == null) {
+            return;
+        }
+        writeIndexRecord(OP_REMOVE, record);
+        Segment segment = segments.get(record.segment);
+        if (segment != null) {
+            untrack(segment, record);
+            if (segment != segments.lastEntry().getValue()) {
+                if (segment.records.isEmpty()) {
+                    deleteSegment(segment);
+                } else if (segment.liveBytes * SEGMENT_COMPACTION_RATIO < segment.size) {
+                    compactSegment(segment);
+                }
+            }
+        }
+        compactIndexIfNeeded();
+    }
+
+    /**
+     * Removes all entries and deletes every segment.
+     * @throws IOException if the files cannot be deleted or the index cannot be reset
+     */
+    public synchronized void clear() throws IOException {
+        liveRecords.clear();
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            deleteSegment(segment);
+        }
+        rewriteIndex();
+    }
+
+    /**
+     * Starts collecting index records in memory instead of writing each one as it happens.
+     * Until {@link #endBatch()}, index records are written in blocks; a crash may lose the
+     * records of the current batch.
+     */
+    public synchronized void beginBatch() {
+        batching = true;
+    }
+
+    /**
+     * Writes the index records collected since {@link #beginBatch()}.
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void endBatch() throws IOException {
+        batching = false;
+        flushIndex();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        batching = false;
+        if (indexChannel != null) {
+            flushIndex();
+        }
+        for (Segment segment : segments.values()) {
+            closeQuietly(segment.channel);
+        }
+        segments.clear();
+        if (indexChannel != null) {
+            indexChannel.close();
+            indexChannel = null;
+        }
+    }
+
+    private void openSegments() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String digits = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                try {
+                    int number = Integer.parseInt(digits);
+                    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    segments.put(number, new Segment(number, path, channel, channel.size()));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file in history directory: {}", path);
+                }
+            }
+        }
+    }
+
+    private void replayIndex() throws IOException {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = indexChannel.size();
+        if (fileSize < INDEX_HEADER_SIZE || !hasValidHeader()) {
+            if (fileSize > 0) {
+                logger.warn("History index {} is unreadable, starting with empty history", indexPath);
+            }
+            rewriteIndex();
+            deleteUnreferencedSegments();
+            return;
+        }
+
+        long recordCount = (fileSize - INDEX_HEADER_SIZE) / INDEX_RECORD_SIZE;
+        long validSize = INDEX_HEADER_SIZE + recordCount * INDEX_RECORD_SIZE;
+        if (recordCount > 0) {
+            MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_ONLY, INDEX_HEADER_SIZE, validSize - INDEX_HEADER_SIZE);
+            for (long i = 0; i < recordCount; i++) {
+                applyIndexRecord(index);
+            }
+        }
+        if (validSize != fileSize) {
+            logger.warn("Truncating partially written history index record");
+            indexChannel.truncate(validSize);
+        }
+        indexChannel.position(validSize);
+        indexRecordCount = recordCount;
+
+        for (Iterator<Record> it = liveRecords.values().iterator(); it.hasNext();) {
+            Record record = it.next();
+            Segment segment = segments.get(record.segment);
+            if (segment == null || (long) record.offset + record.length > segment.size) {
+                logger.warn("Dropping history entry {} with missing body", record.id);
+                it.remove();
+            } else {
+                track(segment, record);
+            }
+        }
+        deleteUnreferencedSegments();
+        compactIndexIfNeeded();
+        logger.info("Loaded history index with {} entries in {} segments", liveRecords.size(), segments.size());
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+        readFully(indexChannel, header, 0);
+        header.flip();
+        return header.getInt() == INDEX_MAGIC && header.getInt() == INDEX_VERSION;
+    }
+
+    private void applyIndexRecord(ByteBuffer index) {
+        byte op = index.get();
+        byte kind = index.get();
+        index.getShort();
+        int segment = index.getInt();
+        int offset = index.getInt();
+        int length = index.getInt();
+        long id = index.getLong();
+        long hash = index.getLong();
+        nextId = Math.max(nextId, id + 1);
+        switch (op) {
+            case OP_ADD:
+                liveRecords.put(id, new Record(id, kind, hash, length, segment, offset));
+                break;
+            case OP_REMOVE:
+                liveRecords.remove(id);
+                break;
+            case OP_RELOCATE:
+                Record record = liveRecords.get(id);
+                if (record != null) {
+                    record.segment = segment;
+                    record.offset = offset;
+                }
+                break;
+            case OP_MOVE_TO_END:
+                Record moved = liveRecords.remove(id);
+                if (moved != null) {
+                    liveRecords.put(id, moved);
+                }
+                break;
+            default:
+                logger.warn("Skipping unknown history index operation {}", op);
+        }
+    }
+
+    private void deleteUnreferencedSegments() throws IOException {
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment.records.isEmpty() && segment != segments.lastEntry().getValue()) {
+                deleteSegment(segment);
+            }
+        }
+    }
+
+    private Segment writableSegment(int bodyLength) throws IOException {
+        Map.Entry<Integer, Segment> last = segments.lastEntry();
+        if (last != null && (last.getValue().size == 0 || last.getValue().size + bodyLength <= segmentSize)) {
+            return last.getValue();
+        }
+        int number = last == null ? 1 : last.getKey() + 1;
+        Path path = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(number, path, channel, 0);
+        segments.put(number, segment);
+        logger.debug("Started history segment {}", path.getFileName());
+        return segment;
+    }
+
+    private void compactSegment(Segment segment) throws IOException {
+        List<Record> records = new ArrayList<>(segment.records);
+        for (Record record : records) {
+            byte[] body = read(record);
+            untrack(segment, record);
+            Segment target = writableSegment(body.length);
+            int offset = (int) target.size;
+            writeFully(target.channel, ByteBuffer.wrap(body), offset);
+            target.size += body.length;
+            record.segment = target.number;
+            record.offset = offset;
+            track(target, record);
+            writeIndexRecord(OP_RELOCATE, record);
+        }
+        logger.debug("Compacted history segment {} ({} live entries moved)", segment.path.getFileName(), records.size());
+        deleteSegment(segment);
+    }
+
+    private void deleteSegment(Segment segment) throws IOException {
+        segments.remove(segment.number);
+        closeQuietly(segment.channel);
+        Files.deleteIfExists(segment.path);
+        logger.debug("Deleted history segment {}", segment.path.getFileName());
+    }
+
+    private void track(Segment segment, Record record) {
+        segment.records.add(record);
+        segment.liveBytes += record.length;
+    }
+
+    private void untrack(Segment segment, Record record) {
+        if (segment.records.remove(record)) {
+            segment.liveBytes -= record.length;
+        }
+    }
+
+    private void writeIndexRecord(byte op, Record record) throws IOException {
+        if (!indexBuffer.hasRemaining()) {
+            flushIndex();
+        }
+        putIndexRecord(indexBuffer, op, record);
+        indexRecordCount++;
+        if (!batching) {
+            flushIndex();
+        }
+    }
+
+    private void flushIndex() throws IOException {
+        indexBuffer.flip();
+        while (indexBuffer.hasRemaining()) {
+            indexChannel.write(indexBuffer);
+        }
+        indexBuffer.clear();
+    }
+
+    private static void putIndexRecord(ByteBuffer buffer, byte op, Record record) {
+        buffer.put(op);
+        buffer.put(record.kind);
+        buffer.putShort((short) 0);
+        buffer.putInt(record.segment);
+        buffer.putInt(record.offset);
+        buffer.putInt(record.length);
+        buffer.putLong(record.id);
+        buffer.putLong(record.hash);
+    }
+
+    private void compactIndexIfNeeded() throws IOException {
+        if (indexRecordCount > MIN_INDEX_RECORDS_BEFORE_COMPACTION && indexRecordCount > 2L * liveRecords.size()) {
+            rewriteIndex();
+        }
+    }
+
+    /**
+     * Writes a fresh index holding one ADD record per live entry and atomically replaces the old one.
+     */
+    private void rewriteIndex() throws IOException {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        Path tempPath = directory.resolve(INDEX_FILE + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + liveRecords.size() * INDEX_RECORD_SIZE);
+        buffer.putInt(INDEX_MAGIC).putInt(INDEX_VERSION);
+        for (Record record : liveRecords.values()) {
+            putIndexRecord(buffer, OP_ADD, record);
+        }
+        buffer.flip();
+        // Pending batched records are superseded by the fresh index
+        indexBuffer.clear();
+        try (FileChannel temp = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(temp, buffer, 0);
+            temp.force(true);
+        }
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexChannel.position(indexChannel.size());
+        indexRecordCount = liveRecords.size();
+        logger.debug("Rewrote history index with {} entries", indexRecordCount);
+    }
+
+    private final class BodyInputStream extends InputStream {
+        private final Record record;
+        private long position;
+
+        private BodyInputStream(Record record, long position) {
+            this.record = record;
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int read = HistoryLog.this.read(record, position, ByteBuffer.wrap(target, offset, Math.min(length, STREAM_CHUNK_SIZE)));
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) {
+            long skipped = Math.max(0, Math.min(count, record.length - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.max(0, Math.min(STREAM_CHUNK_SIZE, record.length - position));
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at position " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close history file", e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.key.clipboarduse.main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+
+/**
+ * Wire format shared by {@link HistoryServer} and {@link HistoryClient}.
+ * <p>
+ * Every message is a frame: a 4-byte big-endian length followed by that many bytes. A request
+ * frame starts with an op code, a response frame with a status. All integers are big-endian
+ * and all text is UTF-8.
+ * <pre>
+ * AUTH   token[16]                          -> OK
+ * GET    int offsetFromEnd                  -> OK body | NOT_FOUND
+ * LIST   int start, int count, int maxChars -> OK int n, n * (int offsetFromEnd, int length, bytes)
+ * SEARCH int limit, int maxChars, query     -> OK int n, n * (int offsetFromEnd, int length, bytes)
+ * PUSH   text                               -> OK byte changed
+ * EXPORT byte gzip, path                    -> OK long entries
+ * IMPORT path                               -> OK int entries, int changed
+ * </pre>
+ * The first request on a connection must be AUTH with the token from the endpoint file, which
+ * only the current user can read; larger frames are refused until it has succeeded.
+ * {@code maxChars} of 0 sends whole entries. LIST and SEARCH return at most {@value #MAX_ITEMS}
+ * items, and stop early once the bodies sent reach {@value #MAX_RESPONSE_BYTES} bytes; clients
+ * page through the rest with LIST's start offset. EXPORT and IMPORT take an absolute path that the application itself writes or reads,
+ * in the format of {@link HistoryArchive}. Error statuses carry a message.
+ */
+public final class HistoryProtocol {
+    public static final byte OP_AUTH = 1;
+    public static final byte OP_GET = 2;
+    public static final byte OP_LIST = 3;
+    public static final byte OP_SEARCH = 4;
+    public static final byte OP_PUSH = 5;
+    public static final byte OP_EXPORT = 6;
+    public static final byte OP_IMPORT = 7;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_NOT_FOUND = 1;
+    public static final byte STATUS_BAD_REQUEST = 2;
+    public static final byte STATUS_UNAUTHORIZED = 3;
+    public static final byte STATUS_ERROR = 4;
+
+    static final int TOKEN_LENGTH = 16;
+    static final int MAX_REQUEST_BYTES = 64 * 1024 * 1024;
+    static final int MAX_ITEMS = 1000;
+    static final int MAX_RESPONSE_BYTES = 64 * 1024 * 1024;
+    static final String ENDPOINT_FILE = "ipc-endpoint";
+
+    private HistoryProtocol() {
+    }
+
+    /**
+     * Returns the endpoint file the running application writes its port and token to.
+     * @return the endpoint file path
+     */
+    public static Path defaultEndpointFile() {
+        return Paths.get(System.getProperty("user.home"), ClipboardConfig.CONFIG_DIRECTORY, ENDPOINT_FILE);
+    }
+
+    /**
+     * Where a running server listens and the token clients must present.
+     */
+    public static final class Endpoint {
+        private final int port;
+        private final byte[] token;
+
+        public Endpoint(int port, byte[] token) {
+            this.port = port;
+            this.token = token.clone();
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public byte[] getToken() {
+            return token.clone();
+        }
+
+        /**
+         * Writes the endpoint file, readable only by the current user where the file system supports it.
+         * @param file the endpoint file
+         * @throws IOException if the file cannot be written
+         */
+        public void write(Path file) throws IOException {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.deleteIfExists(temporary);
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.createFile(temporary, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            }
+            Properties properties = new Properties();
+            properties.setProperty("port", Integer.toString(port));
+            properties.setProperty("token", toHex(token));
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, "Clipboard Utility IPC endpoint");
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Reads an endpoint file.
+         * @param file the endpoint file
+         * @return the endpoint
+         * @throws IOException if the file is missing or malformed
+         */
+        public static Endpoint read(Path file) throws IOException {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            try {
+                return new Endpoint(Integer.parseInt(properties.getProperty("port", "")),
+                    fromHex(properties.getProperty("token", "")));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed endpoint file " + file, e);
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        if (hex.length() != TOKEN_LENGTH * 2) {
+            throw new IllegalArgumentException("Token must have " + TOKEN_LENGTH + " bytes");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Token is not hexadecimal");
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+}
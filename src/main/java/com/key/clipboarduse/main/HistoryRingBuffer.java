@@ -0,0 +1,280 @@
+package com.key.clipboarduse.main;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-capacity ring buffer holding clipboard history in insertion order.
+ * Items can also be removed from the middle, which leaves a tombstone behind. A Fenwick tree
+ * over the slots counts live items, so positional lookups stay O(log n) with tombstones
+ * present and O(1) without them. Tombstones are compacted away once the slots run out,
+ * which amortizes to O(1) per operation.
+ * @param <E> the item type
+ */
+public class HistoryRingBuffer<E extends HistoryRingBuffer.Node> {
+
+    /**
+     * Base class for items, recording which slot holds them so they can be removed in O(log n).
+     */
+    public abstract static class Node {
+        int slot = -1;
+
+        /**
+         * Returns whether this item is currently held by a buffer.
+         * @return true if the item is in a buffer
+         */
+        public boolean isLinked() {
+            return slot >= 0;
+        }
+    }
+
+    private final int capacity;
+    private Object[] items;
+    private int[] liveCounts;
+    private int head;
+    private int span;
+    private int size;
+
+    /**
+     * Creates an empty buffer.
+     * @param capacity the maximum number of items held before the oldest is evicted
+     */
+    public HistoryRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        int slots = capacity > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE - 8 : capacity * 2;
+        this.items = new Object[slots];
+        this.liveCounts = new int[slots + 1];
+    }
+
+    /**
+     * Appends an item, evicting the oldest one if the buffer is full.
+     * @param item the item to append; must not already be in a buffer
+     * @return the evicted item, or null if nothing was evicted
+     */
+    public E add(E item) {
+        if (item.slot >= 0) {
+            throw new IllegalArgumentException("Item is already in a buffer");
+        }
+        E evicted = size == capacity ? removeFirst() : null;
+        if (span == items.length) {
+            compact();
+        }
+        int slot = physical(span);
+        items[slot] = item;
+        item.slot = slot;
+        adjust(slot, 1);
+        span++;
+        size++;
+        return evicted;
+    }
+
+    /**
+     * Removes and returns the oldest item.
+     * @return the oldest item, or null if the buffer is empty
+     */
+    public E removeFirst() {
+        if (size == 0) {
+            return null;
+        }
+        E first = elementAt(head);
+        remove(first);
+        return first;
+    }
+
+    /**
+     * Removes an item from anywhere in the buffer.
+     * @param item the item to remove
+     * @return true if the item was in this buffer and has been removed
+     */
+    public boolean remove(E item) {
+        int slot = item.slot;
+        if (slot < 0 || slot >= items.length || items[slot] != item) {
+            return false;
+        }
+        items[slot] = null;
+        item.slot = -1;
+        adjust(slot, -1);
+        size--;
+        while (span > 0 && items[head] == null) {
+            head = head + 1 == items.length ? 0 : head + 1;
+            span--;
+        }
+        while (span > 0 && items[physical(span - 1)] == null) {
+            span--;
+        }
+        if (span == 0) {
+            head = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the item at the given position.
+     * @param index 0 for the oldest item, size - 1 for the most recent
+     * @return the item
+     */
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (span == size) {
+            return elementAt(physical(index));
+        }
+        int beforeHead = prefixCount(head);
+        int fromHead = size - beforeHead;
+        return elementAt(index < fromHead ? select(beforeHead + index + 1) : select(index - fromHead + 1));
+    }
+
+    /**
+     * Returns the item at the given offset from the most recent end.
+     * @param offsetFromEnd 1 for most recent, 2 for second most recent, etc.
+     * @return the item
+     */
+    public E getFromEnd(int offsetFromEnd) {
+        return get(size - offsetFromEnd);
+    }
+
+    /**
+     * Returns the position of an item in the buffer.
+     * @param item the item
+     * @return 0 for the oldest item, size - 1 for the most recent, or -1 if the item is not in this buffer
+     */
+    public int indexOf(E item) {
+        int slot = item.slot;
+        if (slot < 0 || slot >= items.length || items[slot] != item) {
+            return -1;
+        }
+        int beforeHead = prefixCount(head);
+        int upToSlot = prefixCount(slot + 1);
+        return slot >= head ? upToSlot - beforeHead - 1 : size - beforeHead + upToSlot - 1;
+    }
+
+    /**
+     * Returns the most recently added item.
+     * @return the newest item, or null if the buffer is empty
+     */
+    public E peekLast() {
+        return size == 0 ? null : elementAt(physical(span - 1));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all items.
+     */
+    public void clear() {
+        for (Object item : items) {
+            if (item != null) {
+                ((Node) item).slot = -1;
+            }
+        }
+        Arrays.fill(items, null);
+        Arrays.fill(liveCounts, 0);
+        head = 0;
+        span = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns a read-only list view backed by this buffer, oldest item first.
+     * The view reflects later changes and does not copy the items.
+     * @return the list view
+     */
+    public List<E> asList() {
+        return new AbstractList<E>() {
+            @Override
+            public E get(int index) {
+                return HistoryRingBuffer.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Moves the live items to the start of the slot array, dropping all tombstones.
+     */
+    private void compact() {
+        Object[] packed = new Object[items.length];
+        int count = 0;
+        for (int i = 0; i < span; i++) {
+            Object item = items[physical(i)];
+            if (item != null) {
+                ((Node) item).slot = count;
+                packed[count++] = item;
+            }
+        }
+        items = packed;
+        head = 0;
+        span = count;
+        Arrays.fill(liveCounts, 0);
+        for (int i = 1; i < liveCounts.length; i++) {
+            if (i <= count) {
+                liveCounts[i] += 1;
+            }
+            int parent = i + (i & -i);
+            if (parent < liveCounts.length) {
+                liveCounts[parent] += liveCounts[i];
+            }
+        }
+    }
+
+    private int physical(int offsetFromHead) {
+        int slot = head + offsetFromHead;
+        return slot >= items.length ? slot - items.length : slot;
+    }
+
+    private void adjust(int slot, int delta) {
+        for (int i = slot + 1; i < liveCounts.length; i += i & -i) {
+            liveCounts[i] += delta;
+        }
+    }
+
+    /**
+     * Counts live items in slots [0, end).
+     */
+    private int prefixCount(int end) {
+        int count = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            count += liveCounts[i];
+        }
+        return count;
+    }
+
+    /**
+     * Finds the slot holding the k-th live item (1-based) in slot order.
+     */
+    private int select(int k) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(liveCounts.length - 1); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < liveCounts.length && liveCounts[next] < k) {
+                position = next;
+                k -= liveCounts[next];
+            }
+        }
+        return position;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(int slot) {
+        return (E) items[slot];
+    }
+}
@@ -0,0 +1,510 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves clipboard history to local scripts over the {@link HistoryProtocol}.
+ * One selector thread does all socket I/O without blocking; complete requests are handled on a
+ * small worker pool so a slow search never stalls other clients. Each connection has at most
+ * one request in flight. Responses are written with gathering writes, and uncompressed bodies
+ * kept in the history log go from the segment file to the socket without passing through the heap.
+ * <p>
+ * The server listens on the loopback interface only and writes its port and a random token to
+ * an endpoint file that only the current user can read.
+ */
+public class HistoryServer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryServer.class);
+
+    private static final int HEADER_SIZE = 4;
+    private static final int WORKER_THREADS = 2;
+
+    private final ClipboardManager clipboardManager;
+    private final Path endpointFile;
+    private final byte[] token = new byte[HistoryProtocol.TOKEN_LENGTH];
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Queue<Connection> responded = new ConcurrentLinkedQueue<>();
+    private final Thread selectorThread;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong zeroCopyBytes = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Opens the server socket. Call {@link #start()} to accept connections.
+     * @param clipboardManager the history to serve
+     * @param port the loopback port, or 0 to pick a free one
+     * @param endpointFile where to write the port and token for clients
+     * @throws IOException if the socket cannot be opened
+     */
+    public HistoryServer(ClipboardManager clipboardManager, int port, Path endpointFile) throws IOException {
+        this.clipboardManager = clipboardManager;
+        this.endpointFile = endpointFile;
+        new SecureRandom().nextBytes(token);
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(WORKER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "clipboard-ipc-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.selectorThread = new Thread(this::run, "clipboard-ipc");
+        selectorThread.setDaemon(true);
+    }
+
+    /**
+     * Publishes the endpoint file and starts serving.
+     * @throws IOException if the endpoint file cannot be written
+     */
+    public void start() throws IOException {
+        new HistoryProtocol.Endpoint(getPort(), token).write(endpointFile);
+        selectorThread.start();
+        logger.info("History server listening on port {} (endpoint {})", getPort(), endpointFile);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the endpoint clients need to connect.
+     * @return the endpoint
+     */
+    public HistoryProtocol.Endpoint getEndpoint() {
+        return new HistoryProtocol.Endpoint(getPort(), token);
+    }
+
+    /**
+     * Stops serving, closes all connections and removes the endpoint file.
+     */
+    @Override
+    public void close() {
+        running = false;
+        workers.shutdownNow();
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+            selector.close();
+            serverChannel.close();
+            Files.deleteIfExists(endpointFile);
+        } catch (IOException e) {
+            logger.warn("Failed to clean up history server", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("History server stopped: {} requests, {} bytes sent ({} transferred from the log file)",
+            requests.get(), bytesSent.get(), zeroCopyBytes.get());
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = responded.poll()) != null) {
+                    try {
+                        write(connection);
+                    } catch (IOException | CancelledKeyException e) {
+                        logger.debug("History client connection failed", e);
+                        closeConnection(connection.key);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read((Connection) key.attachment());
+                        } else if (key.isWritable()) {
+                            write((Connection) key.attachment());
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        logger.debug("History client connection failed", e);
+                        closeConnection(key);
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // Closing the server ends the loop
+        } catch (IOException e) {
+            logger.error("History server stopped unexpectedly", e);
+        } finally {
+            for (SelectionKey key : selectorKeys()) {
+                closeConnection(key);
+            }
+        }
+    }
+
+    private List<SelectionKey> selectorKeys() {
+        try {
+            return new ArrayList<>(selector.keys());
+        } catch (ClosedSelectorException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    /**
+     * Reads as much of the current request as is available and hands complete requests to a worker.
+     */
+    private void read(Connection connection) throws IOException {
+        if (connection.header.hasRemaining()) {
+            if (connection.channel.read(connection.header) < 0) {
+                throw new IOException("Client closed the connection");
+            }
+            if (connection.header.hasRemaining()) {
+                return;
+            }
+            // Until the client has authenticated, only a frame as large as AUTH is accepted
+            int length = connection.header.getInt(0);
+            int maxLength = connection.authenticated ? HistoryProtocol.MAX_REQUEST_BYTES : 1 + HistoryProtocol.TOKEN_LENGTH;
+            if (length < 1 || length > maxLength) {
+                throw new IOException("Invalid request length " + length);
+            }
+            connection.request = ByteBuffer.allocate(length);
+        }
+        if (connection.channel.read(connection.request) < 0) {
+            throw new IOException("Client closed the connection");
+        }
+        if (connection.request.hasRemaining()) {
+            return;
+        }
+        connection.key.interestOps(0);
+        connection.request.flip();
+        try {
+            workers.execute(() -> {
+                connection.response = handle(connection);
+                responded.add(connection);
+                selector.wakeup();
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IOException("History server is closing", e);
+        }
+    }
+
+    /**
+     * Writes as much of the pending response as the socket accepts, then waits for the next request.
+     */
+    private void write(Connection connection) throws IOException {
+        Response response = connection.response;
+        SocketChannel channel = connection.channel;
+        if (!channel.isOpen()) {
+            return;
+        }
+        while (response.index < response.parts.length) {
+            EntryBody inLog = response.logBodies[response.index];
+            long written = 0;
+            boolean finishedPart = false;
+            if (inLog != null) {
+                if (response.logPosition < inLog.length()) {
+                    written = inLog.writeTo(channel, response.logPosition);
+                    response.logPosition += written;
+                    zeroCopyBytes.addAndGet(written);
+                }
+                if (response.logPosition == inLog.length()) {
+                    response.index++;
+                    response.logPosition = 0;
+                    finishedPart = true;
+                }
+            } else {
+                int end = response.index;
+                while (end < response.parts.length && response.logBodies[end] == null) {
+                    end++;
+                }
+                written = channel.write(response.parts, response.index, end - response.index);
+                while (response.index < end && !response.parts[response.index].hasRemaining()) {
+                    response.index++;
+                    finishedPart = true;
+                }
+            }
+            bytesSent.addAndGet(written);
+            if (written == 0 && !finishedPart) {
+                connection.key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        connection.response = null;
+        if (response.closeAfterWrite) {
+            closeConnection(connection.key);
+            return;
+        }
+        connection.header.clear();
+        connection.request = null;
+        connection.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            logger.debug("Failed to close history client connection", e);
+        }
+    }
+
+    /**
+     * Runs one request on a worker thread.
+     */
+    private Response handle(Connection connection) {
+        requests.incrementAndGet();
+        ByteBuffer request = connection.request;
+        byte op = request.get();
+        if (!connection.authenticated) {
+            if (op != HistoryProtocol.OP_AUTH || !authenticate(request)) {
+                Response response = Response.error(HistoryProtocol.STATUS_UNAUTHORIZED, "Authentication required");
+                response.closeAfterWrite = true;
+                return response;
+            }
+            connection.authenticated = true;
+            return Response.ok(new ArrayList<>());
+        }
+        try {
+            switch (op) {
+                case HistoryProtocol.OP_GET:
+                    return get(request.getInt());
+                case HistoryProtocol.OP_LIST:
+                    return list(request.getInt(), request.getInt(), request.getInt());
+                case HistoryProtocol.OP_SEARCH:
+                    int limit = request.getInt();
+                    int maxChars = request.getInt();
+                    return search(StandardCharsets.UTF_8.decode(request).toString(), limit, maxChars);
+                case HistoryProtocol.OP_PUSH:
+                    boolean changed = clipboardManager.addToHistory(StandardCharsets.UTF_8.decode(request).toString());
+                    List<EntryBody> parts = new ArrayList<>();
+                    parts.add(EntryBody.of(new byte[] {(byte) (changed ? 1 : 0)}));
+                    return Response.ok(parts);
+                case HistoryProtocol.OP_EXPORT:
+                    boolean gzip = request.get() != 0;
+                    return exportHistory(StandardCharsets.UTF_8.decode(request).toString(), gzip);
+                case HistoryProtocol.OP_IMPORT:
+                    return importHistory(StandardCharsets.UTF_8.decode(request).toString());
+                default:
+                    return Response.error(HistoryProtocol.STATUS_BAD_REQUEST, "Unknown operation " + op);
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Malformed history request", e);
+            return Response.error(HistoryProtocol.STATUS_BAD_REQUEST, "Malformed request");
+        } catch (IOException e) {
+            logger.error("Failed to serve history request", e);
+            return Response.error(HistoryProtocol.STATUS_ERROR, e.getMessage());
+        }
+    }
+
+    private boolean authenticate(ByteBuffer request) {
+        if (request.remaining() != HistoryProtocol.TOKEN_LENGTH) {
+            return false;
+        }
+        byte[] presented = new byte[HistoryProtocol.TOKEN_LENGTH];
+        request.get(presented);
+        return MessageDigest.isEqual(token, presented);
+    }
+
+    private Response get(int offsetFromEnd) throws IOException {
+        HistoryEntry entry = clipboardManager.getHistoryEntry(offsetFromEnd);
+        if (entry == null) {
+            return Response.error(HistoryProtocol.STATUS_NOT_FOUND, "No history item " + offsetFromEnd);
+        }
+        List<EntryBody> parts = new ArrayList<>();
+        parts.add(clipboardManager.getBody(entry));
+        return Response.ok(parts);
+    }
+
+    private Response list(int start, int count, int maxChars) throws IOException {
+        if (start < 1 || count < 0 || maxChars < 0) {
+            return Response.error(HistoryProtocol.STATUS_BAD_REQUEST, "Invalid list range");
+        }
+        List<EntryBody> parts = new ArrayList<>();
+        parts.add(null);
+        int items = 0;
+        long bodyBytes = 0;
+        int maxItems = Math.min(count, HistoryProtocol.MAX_ITEMS);
+        for (int offset = start; items < maxItems && bodyBytes < HistoryProtocol.MAX_RESPONSE_BYTES; offset++) {
+            HistoryEntry entry = clipboardManager.getHistoryEntry(offset);
+            if (entry == null) {
+                break;
+            }
+            bodyBytes += addItem(parts, offset, entry, maxChars);
+            items++;
+        }
+        parts.set(0, EntryBody.of(ByteBuffer.allocate(4).putInt(items).array()));
+        return Response.ok(parts);
+    }
+
+    private Response search(String query, int limit, int maxChars) throws IOException {
+        if (limit < 0 || maxChars < 0) {
+            return Response.error(HistoryProtocol.STATUS_BAD_REQUEST, "Invalid search limits");
+        }
+        List<EntryBody> parts = new ArrayList<>();
+        parts.add(null);
+        int items = 0;
+        long bodyBytes = 0;
+        for (HistoryEntry entry : clipboardManager.search(query, Math.min(limit, HistoryProtocol.MAX_ITEMS))) {
+            if (bodyBytes >= HistoryProtocol.MAX_RESPONSE_BYTES) {
+                break;
+            }
+            int offset = clipboardManager.getOffsetFromEnd(entry);
+            if (offset > 0) {
+                bodyBytes += addItem(parts, offset, entry, maxChars);
+                items++;
+            }
+        }
+        parts.set(0, EntryBody.of(ByteBuffer.allocate(4).putInt(items).array()));
+        return Response.ok(parts);
+    }
+
+    private Response exportHistory(String path, boolean gzip) throws IOException {
+        Path file = Paths.get(path);
+        if (!file.isAbsolute()) {
+            return Response.error(HistoryProtocol.STATUS_BAD_REQUEST, "Export path must be absolute");
+        }
+        long exported = clipboardManager.exportHistory(file, gzip);
+        List<EntryBody> parts = new ArrayList<>();
+        parts.add(EntryBody.of(ByteBuffer.allocate(8).putLong(exported).array()));
+        return Response.ok(parts);
+    }
+
+    private Response importHistory(String path) throws IOException {
+        Path file = Paths.get(path);
+        if (!file.isAbsolute()) {
+            return Response.error(HistoryProtocol.STATUS_BAD_REQUEST, "Import path must be absolute");
+        }
+        if (!Files.isRegularFile(file)) {
+            return Response.error(HistoryProtocol.STATUS_NOT_FOUND, "No such file " + file);
+        }
+        HistoryArchive.Summary summary = clipboardManager.importHistory(file);
+        List<EntryBody> parts = new ArrayList<>();
+        parts.add(EntryBody.of(ByteBuffer.allocate(8).putInt(summary.getEntries()).putInt(summary.getChanged()).array()));
+        return Response.ok(parts);
+    }
+
+    /**
+     * Adds an item to a LIST or SEARCH response. Whole bodies that are compressed are inflated
+     * here, so callers stop adding items once the response is large enough.
+     * @return the length of the body added, in bytes
+     */
+    private long addItem(List<EntryBody> parts, int offset, HistoryEntry entry, int maxChars) throws IOException {
+        EntryBody body;
+        if (maxChars > 0) {
+            // Only the prefix is inflated or read from disk
+            String text = clipboardManager.getTextPrefix(entry, maxChars);
+            if (text.length() == maxChars && Character.isHighSurrogate(text.charAt(maxChars - 1))) {
+                text = text.substring(0, maxChars - 1);
+            }
+            body = EntryBody.of(text.getBytes(StandardCharsets.UTF_8));
+        } else {
+            body = clipboardManager.getBody(entry);
+        }
+        parts.add(EntryBody.of(ByteBuffer.allocate(8).putInt(offset).putInt((int) body.length()).array()));
+        parts.add(body);
+        return body.length();
+    }
+
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        private ByteBuffer request;
+        private boolean authenticated;
+        private volatile Response response;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    /**
+     * A response frame being written: in-memory parts are written with gathering writes,
+     * bodies in the log are transferred from their segment file.
+     */
+    private static final class Response {
+        private final ByteBuffer[] parts;
+        private final EntryBody[] logBodies;
+        private boolean closeAfterWrite;
+        private int index;
+        private long logPosition;
+
+        private Response(byte status, List<EntryBody> payload) {
+            long length = 1;
+            for (EntryBody body : payload) {
+                length += body.length();
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Response of " + length + " bytes is too large");
+            }
+            parts = new ByteBuffer[payload.size() + 1];
+            logBodies = new EntryBody[payload.size() + 1];
+            parts[0] = ByteBuffer.allocate(HEADER_SIZE + 1).putInt((int) length).put(status);
+            parts[0].flip();
+            for (int i = 0; i < payload.size(); i++) {
+                EntryBody body = payload.get(i);
+                if (body.isInLog()) {
+                    logBodies[i + 1] = body;
+                    parts[i + 1] = ByteBuffer.allocate(0);
+                } else {
+                    parts[i + 1] = body.view();
+                }
+            }
+        }
+
+        static Response ok(List<EntryBody> payload) {
+            return new Response(HistoryProtocol.STATUS_OK, payload);
+        }
+
+        static Response error(byte status, String message) {
+            List<EntryBody> payload = new ArrayList<>();
+            payload.add(EntryBody.of(String.valueOf(message).getBytes(StandardCharsets.UTF_8)));
+            return new Response(status, payload);
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decides how history entries are stored and keeps the history within its byte budget.
+ * Entries below the compression threshold stay plain strings; larger ones are kept
+ * deflate-compressed and only inflated when read. Images are kept PNG-encoded and file lists
+ * as plain strings. Under memory pressure, bodies already stored in a log can be spilled from the
+ * heap. Tracks per-tier sizes and hit counts.
+ */
+public class HistoryStorage {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryStorage.class);
+
+    private static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+    private static final int HEADER_SIZE = 4;
+    private static final int MAX_COMPRESSED_PERCENT = 90;
+    private static final int IMAGE_HEADER_BYTES = 24;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final int compressionThreshold;
+    private final long byteBudget;
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong heapBytes = new AtomicLong();
+    private final AtomicLong compressedInputBytes = new AtomicLong();
+    private final AtomicLong compressedOutputBytes = new AtomicLong();
+    private final AtomicLongArray entriesByTier = new AtomicLongArray(HistoryEntry.Tier.values().length);
+    private final AtomicLongArray hitsByTier = new AtomicLongArray(HistoryEntry.Tier.values().length);
+    private final AtomicLong spilledEntries = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+
+    /**
+     * Creates the storage policy.
+     * @param compressionThreshold UTF-8 size in bytes from which entries are compressed
+     * @param byteBudget maximum total stored bytes before the oldest entries are evicted
+     */
+    public HistoryStorage(int compressionThreshold, long byteBudget) {
+        this.compressionThreshold = compressionThreshold;
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Creates an entry for captured text, compressing it if it is large and compresses well.
+     * @param id the entry id
+     * @param text the captured text
+     * @param hash the content hash of the text
+     * @return the entry
+     */
+    public HistoryEntry createEntry(long id, String text, long hash) {
+        int encodedLength = utf8Length(text);
+        if (encodedLength >= compressionThreshold) {
+            byte[] compressed = compress(text.getBytes(StandardCharsets.UTF_8));
+            if ((long) compressed.length * 100 < (long) encodedLength * MAX_COMPRESSED_PERCENT) {
+                compressedInputBytes.addAndGet(encodedLength);
+                compressedOutputBytes.addAndGet(compressed.length);
+                return HistoryEntry.compressed(id, hash, compressed);
+            }
+        }
+        return HistoryEntry.plain(id, text, hash, encodedLength);
+    }
+
+    /**
+     * Creates an entry for copied files. File lists are short and always stay plain.
+     * @param id the entry id
+     * @param paths the absolute paths, one per line
+     * @param hash the content hash of the file list
+     * @return the entry
+     */
+    public HistoryEntry createFileListEntry(long id, String paths, long hash) {
+        return HistoryEntry.fileList(id, paths, hash, utf8Length(paths));
+    }
+
+    /**
+     * Creates an entry for a captured image, encoding it as PNG.
+     * @param id the entry id
+     * @param image the captured image
+     * @param hash the content hash of the image pixels
+     * @return the entry
+     * @throws IOException if the image cannot be encoded
+     */
+    public HistoryEntry createImageEntry(long id, BufferedImage image, long hash) throws IOException {
+        byte[] png = ImageCodec.encode(image);
+        compressedInputBytes.addAndGet(4L * image.getWidth() * image.getHeight());
+        compressedOutputBytes.addAndGet(png.length);
+        return HistoryEntry.image(id, hash, png, ImageCodec.describe(image.getWidth(), image.getHeight()));
+    }
+
+    /**
+     * Returns the text of an entry, inflating it or reading it from the log as its tier requires.
+     * @param entry the entry
+     * @param log the history log holding disk-tier bodies, or null
+     * @return the entry text
+     * @throws IOException if the body cannot be read from the log
+     */
+    public String load(HistoryEntry entry, HistoryLog log) throws IOException {
+        HistoryEntry.Tier tier = entry.getTier();
+        hitsByTier.incrementAndGet(tier.ordinal());
+        if (entry.getContentType() == HistoryEntry.ContentType.IMAGE) {
+            return describeImage(entry, log);
+        }
+        byte[] compressed = entry.getCompressed();
+        if (compressed != null) {
+            return decompress(compressed);
+        }
+        String text = entry.getCachedText();
+        if (text != null) {
+            return text;
+        }
+        HistoryLog.Record record = entry.getRecord();
+        if (log == null || record == null) {
+            throw new IOException("History entry " + entry.getId() + " has no stored body");
+        }
+        byte[] body = log.read(record);
+        text = record.getKind() == HistoryLog.KIND_DEFLATED_TEXT
+            ? decompress(body)
+            : new String(body, StandardCharsets.UTF_8);
+        if (entry.getContentType() == HistoryEntry.ContentType.TEXT && ContentHash.of(text) != record.getHash()) {
+            logger.warn("History entry {} does not match its stored hash", record.getId());
+        }
+        entry.cacheLoadedText(text);
+        return text;
+    }
+
+    /**
+     * Returns the text shown for an image, reading only its header if it is in the log.
+     */
+    private String describeImage(HistoryEntry entry, HistoryLog log) throws IOException {
+        String description = entry.getCachedText();
+        if (description != null) {
+            return description;
+        }
+        byte[] png = entry.getCompressed();
+        if (png == null) {
+            png = log.read(requireRecord(entry, log), IMAGE_HEADER_BYTES);
+        }
+        description = ImageCodec.describe(png);
+        entry.cacheLoadedText(description);
+        return description;
+    }
+
+    /**
+     * Returns the PNG body of an image entry, from the heap or the log.
+     * @param entry the image entry
+     * @param log the history log holding disk-tier bodies, or null
+     * @return the PNG bytes
+     * @throws IOException if the entry is not an image or its body cannot be read
+     */
+    public byte[] loadImage(HistoryEntry entry, HistoryLog log) throws IOException {
+        if (entry.getContentType() != HistoryEntry.ContentType.IMAGE) {
+            throw new IOException("History entry " + entry.getId() + " is not an image");
+        }
+        hitsByTier.incrementAndGet(entry.getTier().ordinal());
+        byte[] png = entry.getCompressed();
+        return png != null ? png : log.read(requireRecord(entry, log));
+    }
+
+    private static HistoryLog.Record requireRecord(HistoryEntry entry, HistoryLog log) throws IOException {
+        HistoryLog.Record record = entry.getRecord();
+        if (log == null || record == null) {
+            throw new IOException("History entry " + entry.getId() + " has no stored body");
+        }
+        return record;
+    }
+
+    /**
+     * Returns the UTF-8 body of an entry without decoding it into a string. Uncompressed bodies
+     * that are only in the log stay there and are transferred from the file when written.
+     * Images are represented by their description.
+     * @param entry the entry
+     * @param log the history log holding disk-tier bodies, or null
+     * @return the entry body
+     * @throws IOException if a compressed body cannot be read or inflated
+     */
+    public EntryBody loadBody(HistoryEntry entry, HistoryLog log) throws IOException {
+        HistoryEntry.Tier tier = entry.getTier();
+        if (entry.getContentType() == HistoryEntry.ContentType.IMAGE) {
+            return EntryBody.of(load(entry, log).getBytes(StandardCharsets.UTF_8));
+        }
+        hitsByTier.incrementAndGet(tier.ordinal());
+        byte[] compressed = entry.getCompressed();
+        if (compressed != null) {
+            return EntryBody.of(inflate(compressed));
+        }
+        String text = entry.getCachedText();
+        if (text != null) {
+            return EntryBody.of(text.getBytes(StandardCharsets.UTF_8));
+        }
+        HistoryLog.Record record = entry.getRecord();
+        if (log == null || record == null) {
+            throw new IOException("History entry " + entry.getId() + " has no stored body");
+        }
+        return record.getKind() == HistoryLog.KIND_DEFLATED_TEXT
+            ? EntryBody.of(inflate(log.read(record)))
+            : EntryBody.inLog(log, record);
+    }
+
+    /**
+     * Opens the UTF-8 body of an entry as a stream, without building the text. Compressed
+     * bodies are inflated as the stream is read, and bodies that are only in the log are read
+     * from the segment file in chunks, so a huge entry never has to be in memory at once.
+     * Images are represented by their description.
+     * @param entry the entry
+     * @param log the history log holding disk-tier bodies, or null
+     * @return the body stream, which the caller closes
+     * @throws IOException if the entry has no stored body
+     */
+    public InputStream openStream(HistoryEntry entry, HistoryLog log) throws IOException {
+        HistoryEntry.Tier tier = entry.getTier();
+        if (entry.getContentType() == HistoryEntry.ContentType.IMAGE) {
+            return new ByteArrayInputStream(load(entry, log).getBytes(StandardCharsets.UTF_8));
+        }
+        hitsByTier.incrementAndGet(tier.ordinal());
+        byte[] compressed = entry.getCompressed();
+        if (compressed != null) {
+            return new InflaterInputStream(new ByteArrayInputStream(compressed, HEADER_SIZE, compressed.length - HEADER_SIZE));
+        }
+        String text = entry.getCachedText();
+        if (text != null) {
+            return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+        }
+        HistoryLog.Record record = requireRecord(entry, log);
+        if (record.getKind() == HistoryLog.KIND_DEFLATED_TEXT) {
+            return new InflaterInputStream(new BufferedInputStream(log.openStream(record, HEADER_SIZE), STREAM_BUFFER_SIZE));
+        }
+        return log.openStream(record, 0);
+    }
+
+    /**
+     * Returns the history log body kind for an entry.
+     * @param entry the entry
+     * @return the log kind
+     */
+    public byte logKind(HistoryEntry entry) {
+        switch (entry.getContentType()) {
+            case IMAGE:
+                return HistoryLog.KIND_IMAGE;
+            case FILE_LIST:
+                return HistoryLog.KIND_FILE_LIST;
+            default:
+                return entry.getTier() == HistoryEntry.Tier.COMPRESSED ? HistoryLog.KIND_DEFLATED_TEXT : HistoryLog.KIND_TEXT;
+        }
+    }
+
+    /**
+     * Returns the bytes written to the history log for an entry.
+     * Compressed entries and images are persisted as they are, without re-encoding.
+     * @param entry the entry
+     * @param text the entry text
+     * @return the log body
+     */
+    public byte[] logBody(HistoryEntry entry, String text) {
+        byte[] compressed = entry.getCompressed();
+        return compressed != null ? compressed : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Accounts for an entry added to history.
+     * @param entry the added entry
+     */
+    public void onAdded(HistoryEntry entry) {
+        storedBytes.addAndGet(entry.getStoredBytes());
+        heapBytes.addAndGet(heapFootprint(entry));
+        entriesByTier.incrementAndGet(entry.getTier().ordinal());
+    }
+
+    /**
+     * Accounts for an entry removed from history.
+     * @param entry the removed entry
+     */
+    public void onRemoved(HistoryEntry entry) {
+        storedBytes.addAndGet(-entry.getStoredBytes());
+        heapBytes.addAndGet(-heapFootprint(entry));
+        entriesByTier.decrementAndGet(entry.getTier().ordinal());
+    }
+
+    /**
+     * Drops the heap body of an entry that is also stored in a log, and accounts for the heap
+     * it released. The caller must hold the same lock as for {@link #onAdded(HistoryEntry)}
+     * and {@link #onRemoved(HistoryEntry)}.
+     * @param entry the entry, which must have a log record
+     * @return the estimated heap bytes released, or 0 if nothing was on the heap
+     */
+    public long spill(HistoryEntry entry) {
+        HistoryEntry.Tier tier = entry.getTier();
+        long footprint = heapFootprint(entry);
+        if (tier == HistoryEntry.Tier.DISK || !entry.spill()) {
+            return 0;
+        }
+        heapBytes.addAndGet(-footprint);
+        entriesByTier.decrementAndGet(tier.ordinal());
+        entriesByTier.incrementAndGet(HistoryEntry.Tier.DISK.ordinal());
+        spilledEntries.incrementAndGet();
+        spilledBytes.addAndGet(footprint);
+        return footprint;
+    }
+
+    /**
+     * Returns the estimated heap an entry body holds, i.e. what spilling it would release.
+     * @param entry the entry
+     * @return the estimated heap bytes
+     */
+    public long getHeapFootprint(HistoryEntry entry) {
+        return heapFootprint(entry);
+    }
+
+    /**
+     * Resets size accounting after history was cleared. Hit counts are kept.
+     */
+    public void onCleared() {
+        storedBytes.set(0);
+        heapBytes.set(0);
+        for (HistoryEntry.Tier tier : HistoryEntry.Tier.values()) {
+            entriesByTier.set(tier.ordinal(), 0);
+        }
+    }
+
+    /**
+     * Returns whether the stored bytes exceed the configured budget.
+     * @return true if entries should be evicted
+     */
+    public boolean isOverBudget() {
+        return storedBytes.get() > byteBudget;
+    }
+
+    public long getByteBudget() {
+        return byteBudget;
+    }
+
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    /**
+     * Returns the estimated heap held by entry bodies (two bytes per character for plain text).
+     * @return the estimated heap usage in bytes
+     */
+    public long getHeapBytes() {
+        return heapBytes.get();
+    }
+
+    /**
+     * Returns the compression ratio (uncompressed / compressed) over every entry compressed so far.
+     * @return the compression ratio, or 1 if nothing was compressed
+     */
+    public double getCompressionRatio() {
+        long output = compressedOutputBytes.get();
+        return output == 0 ? 1 : (double) compressedInputBytes.get() / output;
+    }
+
+    public long getEntryCount(HistoryEntry.Tier tier) {
+        return entriesByTier.get(tier.ordinal());
+    }
+
+    public long getHitCount(HistoryEntry.Tier tier) {
+        return hitsByTier.get(tier.ordinal());
+    }
+
+    public long getSpilledEntryCount() {
+        return spilledEntries.get();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    /**
+     * Describes storage usage for logging.
+     * @return a one-line summary
+     */
+    public String describeStatistics() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("stored=").append(getStoredBytes()).append('/').append(byteBudget).append(" bytes")
+            .append(", heap~").append(getHeapBytes()).append(" bytes")
+            .append(", compression ratio=").append(String.format("%.2f", getCompressionRatio()))
+            .append(", spilled=").append(spilledEntries.get()).append(" entries/").append(spilledBytes.get()).append(" bytes");
+        for (HistoryEntry.Tier tier : HistoryEntry.Tier.values()) {
+            builder.append(", ").append(tier).append(" entries/hits=")
+                .append(getEntryCount(tier)).append('/').append(getHitCount(tier));
+        }
+        return builder.toString();
+    }
+
+    private static long heapFootprint(HistoryEntry entry) {
+        switch (entry.getTier()) {
+            case HEAP:
+                return 2L * entry.getCachedText().length();
+            case COMPRESSED:
+                return entry.getStoredBytes();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Compresses UTF-8 bytes. The result starts with the uncompressed length.
+     */
+    static byte[] compress(byte[] input) {
+        Deflater deflater = new Deflater(COMPRESSION_LEVEL);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] output = new byte[HEADER_SIZE + Math.max(64, input.length / 2)];
+            writeInt(output, input.length);
+            int length = HEADER_SIZE;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return Arrays.copyOf(output, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflates a body produced by {@link #compress(byte[])} back into text.
+     */
+    static String decompress(byte[] body) throws IOException {
+        return new String(inflate(body), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Inflates a body produced by {@link #compress(byte[])} back into UTF-8 bytes.
+     */
+    static byte[] inflate(byte[] body) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            byte[] output = new byte[readInt(body)];
+            inflater.setInput(body, HEADER_SIZE, body.length - HEADER_SIZE);
+            int length = 0;
+            while (length < output.length) {
+                int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Compressed history entry is truncated");
+                }
+                length += inflated;
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed history entry is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Computes the UTF-8 encoded length of a string without encoding it.
+     */
+    static int utf8Length(String text) {
+        int length = text.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes++;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static void writeInt(byte[] target, int value) {
+        target[0] = (byte) (value >>> 24);
+        target[1] = (byte) (value >>> 16);
+        target[2] = (byte) (value >>> 8);
+        target[3] = (byte) value;
+    }
+
+    private static int readInt(byte[] source) {
+        return (source[0] & 0xFF) << 24 | (source[1] & 0xFF) << 16 | (source[2] & 0xFF) << 8 | (source[3] & 0xFF);
+    }
+}
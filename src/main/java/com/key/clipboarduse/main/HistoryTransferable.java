@@ -0,0 +1,77 @@
+package com.key.clipboarduse.main;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A text history entry placed back on the clipboard. Nothing is loaded when it is placed there;
+ * the text is only materialized for the flavor an application asks for when it pastes. Besides
+ * {@link DataFlavor#stringFlavor} the entry is offered as a UTF-8 {@link java.io.InputStream}
+ * and as a {@link java.io.Reader}, which are served straight from the stored body: compressed
+ * entries are inflated and entries on disk are read from the history log as the stream is
+ * consumed, so pasting a huge entry into a streaming consumer never builds the whole string.
+ */
+public final class HistoryTransferable implements Transferable {
+    /** The entry text as a UTF-8 encoded byte stream. */
+    public static final DataFlavor UTF8_STREAM_FLAVOR =
+        new DataFlavor("text/plain; charset=UTF-8; class=java.io.InputStream", "Unicode text (UTF-8)");
+    /** The entry text as a character stream. */
+    public static final DataFlavor READER_FLAVOR = new DataFlavor("text/plain; class=java.io.Reader", "Unicode text");
+
+    private static final DataFlavor[] FLAVORS = {UTF8_STREAM_FLAVOR, READER_FLAVOR, DataFlavor.stringFlavor};
+
+    private final ClipboardManager clipboardManager;
+    private final HistoryEntry entry;
+
+    /**
+     * Wraps a history entry without loading it.
+     * @param clipboardManager where the entry body is read from
+     * @param entry the text entry
+     */
+    HistoryTransferable(ClipboardManager clipboardManager, HistoryEntry entry) {
+        this.clipboardManager = clipboardManager;
+        this.entry = entry;
+    }
+
+    /**
+     * Returns the history entry on the clipboard, so capturing it again only moves the entry.
+     * @param owner the manager asking
+     * @return the entry, or null if it was placed there by another manager
+     */
+    HistoryEntry getEntry(ClipboardManager owner) {
+        return owner == clipboardManager ? entry : null;
+    }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return FLAVORS.clone();
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        return Arrays.asList(FLAVORS).contains(flavor);
+    }
+
+    @Override
+    public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
+        if (DataFlavor.stringFlavor.equals(flavor)) {
+            return clipboardManager.getText(entry);
+        }
+        if (READER_FLAVOR.equals(flavor)) {
+            String text = entry.getCachedText();
+            return text != null
+                ? new StringReader(text)
+                : new InputStreamReader(clipboardManager.openText(entry), StandardCharsets.UTF_8);
+        }
+        if (UTF8_STREAM_FLAVOR.equals(flavor)) {
+            return clipboardManager.openText(entry);
+        }
+        throw new UnsupportedFlavorException(flavor);
+    }
+}
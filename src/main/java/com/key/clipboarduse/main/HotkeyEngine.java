@@ -0,0 +1,349 @@
+package com.key.clipboarduse.main;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * Turns native key events into hotkey actions using tables compiled from the configured chords.
+ * A chord is a set of held modifiers plus a trigger key, written like {@code meta+shift+F}.
+ * Every event is resolved by one lookup into a table indexed by trigger key and the bitmask of
+ * held modifiers, so dispatch does not allocate. When several chords match, the one requiring
+ * the most modifiers wins; extra held modifiers do not prevent a match.
+ * <p>
+ * While the cycle chord's modifiers stay held, its trigger counts as held even after it is
+ * released, so Win, Shift, Shift, F works like Win+Shift+F. Releasing one of the cycle
+ * modifiers produces {@link Action#COMMIT}.
+ * <p>
+ * Instances keep the modifier state of one key stream and must be used from a single thread.
+ */
+public class HotkeyEngine {
+    private static final Logger logger = LoggerFactory.getLogger(HotkeyEngine.class);
+
+    /**
+     * What a key event asks the application to do.
+     */
+    public enum Action {
+        /** Capture the clipboard; fires when the trigger is released, after the copy happened. */
+        CAPTURE,
+        /** Show the next history item. */
+        CYCLE,
+        /** Paste the shown history item; fires when a cycle modifier is released. */
+        COMMIT,
+        /** Open history search. */
+        SEARCH,
+        /** Exit the application. */
+        EXIT
+    }
+
+    static final int META = 1;
+    static final int CONTROL = 2;
+    static final int SHIFT = 4;
+    static final int ALT = 8;
+    private static final int MASKS = 16;
+    private static final int KEY_CODES = 1 << 16;
+    private static final int MAX_SLOTS = 127;
+
+    private final Chord capture;
+    private final Chord cycle;
+    private final Chord search;
+    private final Chord exit;
+    private final byte[] keySlots = new byte[KEY_CODES];
+    private final Action[] pressActions;
+    private final Action[] releaseActions;
+    private int heldModifiers;
+    private int latchedModifiers;
+
+    /**
+     * Compiles the tables for a set of chords.
+     * @param capture the chord that captures the clipboard
+     * @param cycle the chord that shows the next history item
+     * @param search the chord that opens search
+     * @param exit the chord that exits the application
+     */
+    HotkeyEngine(Chord capture, Chord cycle, Chord search, Chord exit) {
+        this.capture = capture;
+        this.cycle = cycle;
+        this.search = search;
+        this.exit = exit;
+        int slots = 1;
+        for (Chord chord : new Chord[] {capture, cycle, search, exit}) {
+            slots = assignSlot(chord.keyCode, slots);
+        }
+        for (int bit = META; bit <= ALT; bit <<= 1) {
+            if ((cycle.held() & bit) != 0) {
+                slots = assignSlot(modifierKey(bit), slots);
+            }
+        }
+        this.pressActions = new Action[slots * MASKS];
+        this.releaseActions = new Action[slots * MASKS];
+        for (int held = 0; held < MASKS; held++) {
+            bind(pressActions, cycle, Action.CYCLE, held);
+            bind(pressActions, search, Action.SEARCH, held);
+            bind(pressActions, exit, Action.EXIT, held);
+            bind(releaseActions, capture, Action.CAPTURE, held);
+            for (int bit = META; bit <= ALT; bit <<= 1) {
+                if ((cycle.held() & bit) != 0) {
+                    bind(releaseActions, new Chord(cycle.held() & ~bit, modifierKey(bit)), Action.COMMIT, held);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an engine with the built-in chords: Ctrl+C, Win+Shift, Win+Shift+F and Win+Shift+E.
+     * @return the engine
+     */
+    public static HotkeyEngine defaults() {
+        return new HotkeyEngine(Chord.parse(ClipboardConfig.DEFAULT_CAPTURE_HOTKEY),
+            Chord.parse(ClipboardConfig.DEFAULT_CYCLE_HOTKEY),
+            Chord.parse(ClipboardConfig.DEFAULT_SEARCH_HOTKEY),
+            Chord.parse(ClipboardConfig.DEFAULT_EXIT_HOTKEY));
+    }
+
+    /**
+     * Creates an engine with the chords from the configuration. Chords that cannot be parsed
+     * are logged and replaced by their defaults.
+     * @param config the configuration
+     * @return the engine
+     */
+    public static HotkeyEngine fromConfig(ClipboardConfig config) {
+        HotkeyEngine engine = new HotkeyEngine(
+            chord(ClipboardConfig.HOTKEY_CAPTURE, config.getCaptureHotkey(), ClipboardConfig.DEFAULT_CAPTURE_HOTKEY),
+            chord(ClipboardConfig.HOTKEY_CYCLE, config.getCycleHotkey(), ClipboardConfig.DEFAULT_CYCLE_HOTKEY),
+            chord(ClipboardConfig.HOTKEY_SEARCH, config.getSearchHotkey(), ClipboardConfig.DEFAULT_SEARCH_HOTKEY),
+            chord(ClipboardConfig.HOTKEY_EXIT, config.getExitHotkey(), ClipboardConfig.DEFAULT_EXIT_HOTKEY));
+        logger.info("Hotkeys: capture {}, cycle {}, search {}, exit {}", engine.describe(Action.CAPTURE),
+            engine.describe(Action.CYCLE), engine.describe(Action.SEARCH), engine.describe(Action.EXIT));
+        return engine;
+    }
+
+    /**
+     * Records a key press and returns the action it triggers.
+     * @param keyCode the native virtual key code
+     * @return the action, or null if the press triggers nothing
+     */
+    public Action pressed(int keyCode) {
+        int bit = modifierBit(keyCode);
+        Action action = lookup(pressActions, keyCode, bit);
+        heldModifiers |= bit;
+        if (action == Action.CYCLE) {
+            latchedModifiers = modifierBit(cycle.keyCode);
+        }
+        return action;
+    }
+
+    /**
+     * Records a key release and returns the action it triggers.
+     * @param keyCode the native virtual key code
+     * @return the action, or null if the release triggers nothing
+     */
+    public Action released(int keyCode) {
+        int bit = modifierBit(keyCode);
+        Action action = lookup(releaseActions, keyCode, bit);
+        heldModifiers &= ~bit;
+        if ((cycle.held() & bit) != 0) {
+            latchedModifiers = 0;
+        }
+        return action;
+    }
+
+    /**
+     * Describes the chord bound to an action for display, e.g. {@code Win+Shift+F}.
+     * {@link Action#COMMIT} is described by the cycle modifiers whose release pastes.
+     * @param action the action
+     * @return the chord description
+     */
+    public String describe(Action action) {
+        switch (action) {
+            case CAPTURE:
+                return capture.toString();
+            case CYCLE:
+                return cycle.toString();
+            case COMMIT:
+                return Chord.describeModifiers(cycle.held());
+            case SEARCH:
+                return search.toString();
+            default:
+                return exit.toString();
+        }
+    }
+
+    private Action lookup(Action[] table, int keyCode, int bit) {
+        if ((keyCode & ~(KEY_CODES - 1)) != 0) {
+            return null;
+        }
+        int slot = keySlots[keyCode];
+        if (slot == 0) {
+            return null;
+        }
+        return table[slot * MASKS + ((heldModifiers | latchedModifiers) & ~bit)];
+    }
+
+    private int assignSlot(int keyCode, int slots) {
+        if (keySlots[keyCode] != 0) {
+            return slots;
+        }
+        if (slots > MAX_SLOTS) {
+            throw new IllegalStateException("Too many hotkey trigger keys");
+        }
+        keySlots[keyCode] = (byte) slots;
+        return slots + 1;
+    }
+
+    /**
+     * Binds an action for one held-modifier mask if the chord matches it more specifically than
+     * the action already bound there.
+     */
+    private void bind(Action[] table, Chord chord, Action action, int held) {
+        int required = chord.held();
+        if ((held & required) != required) {
+            return;
+        }
+        int index = keySlots[chord.keyCode] * MASKS + held;
+        Action bound = table[index];
+        if (bound == null || Integer.bitCount(required) > Integer.bitCount(requiredModifiers(bound))) {
+            table[index] = action;
+        }
+    }
+
+    private int requiredModifiers(Action action) {
+        switch (action) {
+            case CAPTURE:
+                return capture.held();
+            case CYCLE:
+                return cycle.held();
+            case SEARCH:
+                return search.held();
+            case EXIT:
+                return exit.held();
+            default:
+                return 0;
+        }
+    }
+
+    private static Chord chord(String key, String value, String defaultValue) {
+        try {
+            return Chord.parse(value);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Setting {}={} is not a valid hotkey ({}), using {}", key, value, e.getMessage(), defaultValue);
+            return Chord.parse(defaultValue);
+        }
+    }
+
+    static int modifierBit(int keyCode) {
+        switch (keyCode) {
+            case NativeKeyEvent.VC_META:
+                return META;
+            case NativeKeyEvent.VC_CONTROL:
+                return CONTROL;
+            case NativeKeyEvent.VC_SHIFT:
+                return SHIFT;
+            case NativeKeyEvent.VC_ALT:
+                return ALT;
+            default:
+                return 0;
+        }
+    }
+
+    private static int modifierKey(int bit) {
+        switch (bit) {
+            case META:
+                return NativeKeyEvent.VC_META;
+            case CONTROL:
+                return NativeKeyEvent.VC_CONTROL;
+            case SHIFT:
+                return NativeKeyEvent.VC_SHIFT;
+            default:
+                return NativeKeyEvent.VC_ALT;
+        }
+    }
+
+    /**
+     * A trigger key plus the modifiers that must be held. A modifier trigger, as in
+     * {@code meta+shift}, is itself part of the modifier mask.
+     */
+    static final class Chord {
+        final int modifiers;
+        final int keyCode;
+
+        Chord(int modifiers, int keyCode) {
+            this.modifiers = modifiers | modifierBit(keyCode);
+            this.keyCode = keyCode;
+        }
+
+        /**
+         * Parses a chord such as {@code ctrl+C}, {@code meta+shift} or {@code ctrl+alt+V}.
+         * Modifiers are {@code meta} (also {@code win}, {@code super}), {@code ctrl}, {@code shift}
+         * and {@code alt}; the last part is the trigger, named like the {@code VC_} key constants.
+         * @param text the chord text
+         * @return the chord
+         * @throws IllegalArgumentException if the text names an unknown key
+         */
+        static Chord parse(String text) {
+            String[] parts = text.trim().split("\\s*\\+\\s*");
+            int modifiers = 0;
+            for (int i = 0; i < parts.length - 1; i++) {
+                int bit = modifierBit(keyCode(parts[i]));
+                if (bit == 0) {
+                    throw new IllegalArgumentException(parts[i] + " is not a modifier");
+                }
+                modifiers |= bit;
+            }
+            int keyCode = keyCode(parts[parts.length - 1]);
+            if (keyCode == NativeKeyEvent.VC_UNDEFINED) {
+                throw new IllegalArgumentException("no trigger key");
+            }
+            return new Chord(modifiers, keyCode);
+        }
+
+        private static int keyCode(String name) {
+            String upper = name.toUpperCase(Locale.ROOT);
+            switch (upper) {
+                case "WIN":
+                case "SUPER":
+                case "CMD":
+                    return NativeKeyEvent.VC_META;
+                case "CTRL":
+                    return NativeKeyEvent.VC_CONTROL;
+                default:
+                    break;
+            }
+            try {
+                return NativeKeyEvent.class.getField("VC_" + upper).getInt(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("unknown key " + name, e);
+            }
+        }
+
+        /**
+         * Returns the modifiers that must already be held when the trigger is pressed.
+         * @return the modifier mask without the trigger
+         */
+        int held() {
+            return modifiers & ~modifierBit(keyCode);
+        }
+
+        static String describeModifiers(int modifiers) {
+            StringBuilder builder = new StringBuilder();
+            String[] names = {"Win", "Ctrl", "Shift", "Alt"};
+            for (int i = 0; i < names.length; i++) {
+                if ((modifiers & (1 << i)) != 0) {
+                    builder.append(builder.length() == 0 ? "" : "+").append(names[i]);
+                }
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public String toString() {
+            String held = describeModifiers(held());
+            String key = modifierBit(keyCode) != 0
+                ? describeModifiers(modifierBit(keyCode))
+                : NativeKeyEvent.getKeyText(keyCode);
+            return held.isEmpty() ? key : held + "+" + key;
+        }
+    }
+}
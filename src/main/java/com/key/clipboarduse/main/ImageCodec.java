@@ -0,0 +1,182 @@
+package com.key.clipboarduse.main;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Converts clipboard images to and from the PNG bodies kept in history.
+ * Images are only decoded when they are shown or pasted; thumbnails are decoded with source
+ * subsampling, so a large screenshot is never fully decoded just to show a preview.
+ */
+final class ImageCodec {
+    private static final int PNG_SIGNATURE_LENGTH = 8;
+    private static final int PNG_HEADER_LENGTH = 24;
+    private static final int SAMPLE_GRID = 64;
+
+    private ImageCodec() {
+    }
+
+    /**
+     * Returns a clipboard image as an ARGB image whose pixels can be read without copying.
+     * @param image the image taken off the clipboard
+     * @return the image, or null if its size is not known
+     */
+    static BufferedImage toArgb(Image image) {
+        if (image instanceof BufferedImage && ((BufferedImage) image).getType() == BufferedImage.TYPE_INT_ARGB) {
+            return (BufferedImage) image;
+        }
+        int width = image.getWidth(null);
+        int height = image.getHeight(null);
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        BufferedImage argb = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = argb.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return argb;
+    }
+
+    /**
+     * Returns the pixels of an image made by {@link #toArgb(Image)}, without copying them.
+     * @param image the ARGB image
+     * @return the pixels, row by row
+     */
+    static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Returns a fingerprint of an image's size and of a grid of at most 64 by 64 of its pixels,
+     * cheap enough to tell on every clipboard poll whether an image has changed.
+     * @param image the image
+     * @return the fingerprint
+     */
+    static long sample(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stepX = Math.max(1, width / SAMPLE_GRID);
+        int stepY = Math.max(1, height / SAMPLE_GRID);
+        long fingerprint = width * 31L + height;
+        for (int y = stepY / 2; y < height; y += stepY) {
+            for (int x = stepX / 2; x < width; x += stepX) {
+                fingerprint = fingerprint * 0x9E3779B97F4A7C15L + image.getRGB(x, y);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Encodes an image as PNG.
+     * @param image the image
+     * @return the PNG bytes
+     * @throws IOException if no PNG writer is available
+     */
+    static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(image.getWidth() * image.getHeight() / 2 + 64);
+        if (!ImageIO.write(image, "png", out)) {
+            throw new IOException("No PNG writer available");
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a PNG body at full size, e.g. for pasting it.
+     * @param png the PNG bytes
+     * @return the image
+     * @throws IOException if the body is not a readable image
+     */
+    static BufferedImage decode(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (image == null) {
+            throw new IOException("History entry is not a readable image");
+        }
+        return image;
+    }
+
+    /**
+     * Decodes a PNG body scaled down to fit a box, keeping its aspect ratio. Images already
+     * small enough keep their size. Whole rows and columns are skipped while decoding, so only
+     * about the pixels of the thumbnail are ever decoded; the rest of the scaling is smoothed.
+     * @param png the PNG bytes
+     * @param maxWidth the box width
+     * @param maxHeight the box height
+     * @return the thumbnail
+     * @throws IOException if the body is not a readable image
+     */
+    static BufferedImage decodeThumbnail(byte[] png, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(png))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("History entry is not a readable image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                double scale = Math.min(1, Math.min((double) maxWidth / width, (double) maxHeight / height));
+                int targetWidth = Math.max(1, (int) Math.round(width * scale));
+                int targetHeight = Math.max(1, (int) Math.round(height * scale));
+                int subsampling = Math.max(1, Math.min(width / targetWidth, height / targetHeight));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                return scale(decoded, targetWidth, targetHeight);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        if (image.getWidth() == width && image.getHeight() == height
+                && image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Describes an image by its size, read from the PNG header without decoding it.
+     * @param png the PNG bytes, or at least their first 24
+     * @return a description such as {@code Image 800 × 600}
+     */
+    static String describe(byte[] png) {
+        if (png.length < PNG_HEADER_LENGTH) {
+            return "Image";
+        }
+        return describe(readInt(png, PNG_SIGNATURE_LENGTH + 8), readInt(png, PNG_SIGNATURE_LENGTH + 12));
+    }
+
+    static String describe(int width, int height) {
+        return "Image " + width + " × " + height;
+    }
+
+    private static int readInt(byte[] source, int offset) {
+        return (source[offset] & 0xFF) << 24 | (source[offset + 1] & 0xFF) << 16
+            | (source[offset + 2] & 0xFF) << 8 | (source[offset + 3] & 0xFF);
+    }
+}
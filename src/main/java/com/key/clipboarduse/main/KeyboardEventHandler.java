@@ -7,117 +7,102 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Handles native keyboard events for clipboard navigation.
- * Monitors key combinations:
+ * Key events are resolved into actions by a {@link HotkeyEngine}; the default chords are:
  * - Ctrl+C: Captures clipboard content
  * - Win+Shift: Cycles through clipboard history
+ * - Win+Shift+F: Opens history search
  * - Win+Shift+E: Exits application
+ * Actions are recorded to the {@link EventLog} of the clipboard manager rather than logged,
+ * since they run on the native hook thread.
  */
 public class KeyboardEventHandler implements NativeKeyListener {
     private static final Logger logger = LoggerFactory.getLogger(KeyboardEventHandler.class);
     
-    private final ClipboardWindow window;
+    private final HistoryDisplay window;
     private final ClipboardManager clipboardManager;
+    private final ClipboardMonitor clipboardMonitor;
+    private final HotkeyEngine hotkeys;
+    private final EventLog eventLog;
     
-    private boolean isWindowKeyHeld = false;
-    private boolean isCtrlKeyHeld = false;
-    private boolean isWinShiftHeld = false;
     private int historyIndex = 0;
     
-    public KeyboardEventHandler(ClipboardWindow window, ClipboardManager clipboardManager) {
+    public KeyboardEventHandler(HistoryDisplay window, ClipboardManager clipboardManager,
+                                ClipboardMonitor clipboardMonitor) {
+        this(window, clipboardManager, clipboardMonitor, HotkeyEngine.defaults());
+    }
+    
+    public KeyboardEventHandler(HistoryDisplay window, ClipboardManager clipboardManager,
+                                ClipboardMonitor clipboardMonitor, HotkeyEngine hotkeys) {
         this.window = window;
         this.clipboardManager = clipboardManager;
+        this.clipboardMonitor = clipboardMonitor;
+        this.hotkeys = hotkeys;
+        this.eventLog = clipboardManager.getEventLog();
     }
     
     @Override
     public void nativeKeyPressed(NativeKeyEvent event) {
-        int keyCode = event.getKeyCode();
-        
-        switch (keyCode) {
-            case NativeKeyEvent.VC_META:
-            case NativeKeyEvent.VC_META_L:
-            case NativeKeyEvent.VC_META_R:
-                isWindowKeyHeld = true;
-                break;
-                
-            case NativeKeyEvent.VC_CONTROL:
-            case NativeKeyEvent.VC_CONTROL_L:
-            case NativeKeyEvent.VC_CONTROL_R:
-                isCtrlKeyHeld = true;
-                break;
-                
-            case NativeKeyEvent.VC_SHIFT:
-            case NativeKeyEvent.VC_SHIFT_L:
-            case NativeKeyEvent.VC_SHIFT_R:
-                if (isWindowKeyHeld) {
-                    handleShiftWithWin();
-                }
-                break;
-                
-            case NativeKeyEvent.VC_E:
-                if (isWinShiftHeld) {
-                    logger.info("Exit command received (Win+Shift+E)");
-                    window.setVisible(false);
-                    System.exit(0);
-                }
-                break;
+        HotkeyEngine.Action action = hotkeys.pressed(event.getKeyCode());
+        if (action != null) {
+            perform(action);
         }
     }
     
     @Override
     public void nativeKeyReleased(NativeKeyEvent event) {
-        int keyCode = event.getKeyCode();
-        
-        switch (keyCode) {
-            case NativeKeyEvent.VC_META:
-            case NativeKeyEvent.VC_META_L:
-            case NativeKeyEvent.VC_META_R:
-                if (isWindowKeyHeld) {
-                    handleWindowKeyRelease();
-                }
-                isWindowKeyHeld = false;
+        HotkeyEngine.Action action = hotkeys.released(event.getKeyCode());
+        if (action != null) {
+            perform(action);
+        }
+    }
+    
+    @Override
+    public void nativeKeyTyped(NativeKeyEvent event) {
+        // Not used
+    }
+    
+    /**
+     * Runs the action a key event triggered.
+     */
+    private void perform(HotkeyEngine.Action action) {
+        switch (action) {
+            case CAPTURE:
+                handleCtrlC();
                 break;
                 
-            case NativeKeyEvent.VC_CONTROL:
-            case NativeKeyEvent.VC_CONTROL_L:
-            case NativeKeyEvent.VC_CONTROL_R:
-                isCtrlKeyHeld = false;
+            case CYCLE:
+                handleShiftWithWin();
                 break;
                 
-            case NativeKeyEvent.VC_SHIFT:
-            case NativeKeyEvent.VC_SHIFT_L:
-            case NativeKeyEvent.VC_SHIFT_R:
-                if (isWindowKeyHeld) {
-                    isWinShiftHeld = true;
-                }
+            case COMMIT:
+                handleWindowKeyRelease();
                 break;
                 
-            case NativeKeyEvent.VC_C:
-                if (isCtrlKeyHeld) {
-                    handleCtrlC();
-                }
+            case SEARCH:
+                eventLog.record(EventLog.Event.SEARCH_OPENED);
+                window.openSearch();
+                break;
+                
+            case EXIT:
+                logger.info("Exit command received");
+                window.setVisible(false);
+                System.exit(0);
                 break;
         }
     }
     
-    @Override
-    public void nativeKeyTyped(NativeKeyEvent event) {
-        // Not used
-    }
-    
     /**
      * Handles the Shift key press while Windows key is held.
-     * Cycles through clipboard history.
+     * Cycles through clipboard history, most recent first or by frecency as configured.
      */
     private void handleShiftWithWin() {
         int historySize = clipboardManager.getHistorySize();
         
         if (historySize == 0) {
-            logger.debug("No clipboard history available");
+            eventLog.record(EventLog.Event.HISTORY_EMPTY);
             return;
         }
         
-        window.setVisible(false);
-        
         // Increment index, wrapping around if necessary
         if (historySize - historyIndex <= 0) {
             historyIndex = 1;
@@ -125,26 +110,31 @@ public class KeyboardEventHandler implements NativeKeyListener {
             historyIndex++;
         }
         
-        // Display the selected history item
-        String content = clipboardManager.getHistoryItem(historyIndex);
-        window.displayText(content);
-        window.setVisible(true);
-        
-        logger.debug("Showing clipboard history item {} of {}", historyIndex, historySize);
+        // Display the selected history item; the window swaps it in without hiding first
+        window.showHistoryItem(historyIndex);
+        eventLog.record(EventLog.Event.HISTORY_SHOWN, historyIndex, historySize);
     }
     
     /**
-     * Handles the Windows key release.
-     * Sets the selected history item to the system clipboard.
+     * Handles the release of a cycle modifier (the Windows key by default).
+     * Sets the selected history item to the system clipboard and records the pick, which
+     * raises the item in frecency order.
      */
     private void handleWindowKeyRelease() {
-        isWindowKeyHeld = false;
+        if (window.isSearchActive()) {
+            // Search mode stays open until a result is picked or Escape is pressed
+            historyIndex = 0;
+            return;
+        }
         window.setVisible(false);
         
         if (historyIndex > 0) {
-            String content = clipboardManager.getHistoryItem(historyIndex);
-            clipboardManager.setSystemClipboard(content);
-            logger.debug("Set clipboard to history item {}", historyIndex);
+            HistoryEntry entry = clipboardManager.getCycleEntry(historyIndex);
+            if (entry != null) {
+                clipboardManager.recordSelection(entry);
+                clipboardManager.setSystemClipboard(entry);
+                eventLog.record(EventLog.Event.HISTORY_PICKED, historyIndex, entry.getId());
+            }
         }
         
         historyIndex = 0;
@@ -152,16 +142,9 @@ public class KeyboardEventHandler implements NativeKeyListener {
     
     /**
      * Handles Ctrl+C key combination.
-     * Captures current clipboard content to history.
+     * Asks the clipboard monitor to capture the new content; never blocks the hook thread.
      */
     private void handleCtrlC() {
-        // Small delay to allow clipboard to be populated by the system
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.warn("Sleep interrupted while waiting for clipboard", e);
-        }
-        clipboardManager.captureClipboard();
+        clipboardMonitor.requestCapture(ClipboardMonitor.Source.HOTKEY);
     }
 }
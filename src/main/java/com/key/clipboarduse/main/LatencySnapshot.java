@@ -0,0 +1,71 @@
+package com.key.clipboarduse.main;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Summary of a {@link LatencyHistogram}, exposed over JMX as composite data.
+ * Latencies are in microseconds.
+ */
+public class LatencySnapshot {
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    LatencySnapshot(long count, long meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos,
+                    long maxNanos) {
+        this(count, meanNanos / NANOS_PER_MICRO, p50Nanos / NANOS_PER_MICRO, p90Nanos / NANOS_PER_MICRO,
+            p99Nanos / NANOS_PER_MICRO, p999Nanos / NANOS_PER_MICRO, maxNanos / NANOS_PER_MICRO);
+    }
+
+    @ConstructorProperties({"count", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "p999Micros", "maxMicros"})
+    public LatencySnapshot(long count, double meanMicros, double p50Micros, double p90Micros, double p99Micros,
+                           double p999Micros, double maxMicros) {
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1f us, p50=%.1f us, p99=%.1f us, max=%.1f us",
+            count, meanMicros, p50Micros, p99Micros, maxMicros);
+    }
+}
@@ -0,0 +1,110 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Builds the {@link ClipboardWindow} on first use instead of during start-up.
+ * Until the window exists, calls are queued on the event dispatch thread in order, and the
+ * first of them builds and pre-warms the window there.
+ */
+public class LazyHistoryDisplay implements HistoryDisplay {
+    private static final Logger logger = LoggerFactory.getLogger(LazyHistoryDisplay.class);
+
+    private final Supplier<ClipboardWindow> factory;
+    private ClipboardWindow built;
+    private volatile ClipboardWindow window;
+
+    /**
+     * Creates the display.
+     * @param factory builds the window; called once, on the event dispatch thread
+     */
+    public LazyHistoryDisplay(Supplier<ClipboardWindow> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Builds the window in the background once the event dispatch thread is idle, so the first
+     * hotkey press usually finds it ready.
+     */
+    public void buildWhenIdle() {
+        SwingUtilities.invokeLater(() -> window = build());
+    }
+
+    @Override
+    public void showHistoryItem(int position) {
+        ClipboardWindow current = window;
+        if (current != null) {
+            current.showHistoryItem(position);
+        } else {
+            SwingUtilities.invokeLater(() -> publish(build()).showHistoryItem(position));
+        }
+    }
+
+    @Override
+    public void openSearch() {
+        ClipboardWindow current = window;
+        if (current != null) {
+            current.openSearch();
+        } else {
+            SwingUtilities.invokeLater(() -> publish(build()).openSearch());
+        }
+    }
+
+    @Override
+    public boolean isSearchActive() {
+        ClipboardWindow current = window;
+        return current != null && current.isSearchActive();
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        ClipboardWindow current = window;
+        if (current != null) {
+            current.setVisible(visible);
+        } else {
+            SwingUtilities.invokeLater(() -> {
+                if (built != null) {
+                    built.setVisible(visible);
+                }
+            });
+        }
+    }
+
+    /**
+     * Releases the window if it was built.
+     */
+    public void dispose() {
+        SwingUtilities.invokeLater(() -> {
+            if (built != null) {
+                built.dispose();
+            }
+        });
+    }
+
+    /**
+     * Returns the window, building it if needed. Event dispatch thread only.
+     */
+    private ClipboardWindow build() {
+        if (built == null) {
+            long start = System.nanoTime();
+            built = factory.get();
+            built.prewarm();
+            logger.info("Clipboard window built in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return built;
+    }
+
+    /**
+     * Lets later calls reach the window directly. Queued calls publish the window only after
+     * they ran, so calls made meanwhile cannot overtake them.
+     */
+    private ClipboardWindow publish(ClipboardWindow current) {
+        SwingUtilities.invokeLater(() -> window = current);
+        return current;
+    }
+}
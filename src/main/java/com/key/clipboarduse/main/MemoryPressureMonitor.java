@@ -0,0 +1,156 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells clipboard history when the JVM runs short of heap. Usage and collection usage thresholds
+ * are set on every heap pool that supports them, at a share of the pool's maximum size, and
+ * the pools' threshold notifications run a relief action on a background thread. The collection
+ * threshold is the reliable signal: it is only crossed when a pool is still that full right after
+ * a garbage collection. Notifications arriving while relief runs are coalesced into one more run.
+ */
+public class MemoryPressureMonitor implements NotificationListener, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MemoryPressureMonitor.class);
+
+    private final Runnable relief;
+    private final int thresholdPercent;
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    private final AtomicBoolean reliefPending = new AtomicBoolean();
+    private final AtomicLong notifications = new AtomicLong();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "memory-pressure");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private NotificationEmitter emitter;
+
+    /**
+     * Creates a monitor; it does nothing until {@link #start()} is called.
+     * @param relief run when a heap pool crosses its threshold
+     * @param thresholdPercent the share of each pool's maximum size that counts as pressure
+     */
+    public MemoryPressureMonitor(Runnable relief, int thresholdPercent) {
+        this.relief = relief;
+        this.thresholdPercent = thresholdPercent;
+    }
+
+    /**
+     * Sets the pool thresholds and starts listening for their notifications.
+     * @return false if no heap pool supports thresholds, in which case nothing is monitored
+     */
+    public synchronized boolean start() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() != MemoryType.HEAP || max <= 0) {
+                continue;
+            }
+            long threshold = max / 100 * thresholdPercent;
+            boolean monitored = false;
+            if (pool.isUsageThresholdSupported()) {
+                pool.setUsageThreshold(threshold);
+                monitored = true;
+            }
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(threshold);
+                monitored = true;
+            }
+            if (monitored) {
+                pools.add(pool);
+                logger.debug("Monitoring heap pool {} above {} of {} bytes", pool.getName(), threshold, max);
+            }
+        }
+        if (pools.isEmpty()) {
+            logger.info("No heap pool supports usage thresholds, memory pressure is not monitored");
+            return false;
+        }
+        emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        emitter.addNotificationListener(this, null, null);
+        return true;
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+                && !MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+            return;
+        }
+        notifications.incrementAndGet();
+        if (!reliefPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                reliefPending.set(false);
+                relief.run();
+            });
+        } catch (RejectedExecutionException e) {
+            reliefPending.set(false);
+            logger.debug("Memory pressure monitor is closed", e);
+        }
+    }
+
+    /**
+     * Returns how far the monitored heap pools currently are above their thresholds.
+     * @return the bytes over the thresholds, summed over the pools, or 0 if none is over
+     */
+    public synchronized long getBytesOverThreshold() {
+        long over = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            if (pool.isUsageThresholdSupported()) {
+                over += Math.max(0, pool.getUsage().getUsed() - pool.getUsageThreshold());
+            }
+        }
+        return over;
+    }
+
+    /**
+     * Returns how many threshold notifications have been received.
+     * @return the notification count
+     */
+    public long getNotificationCount() {
+        return notifications.get();
+    }
+
+    /**
+     * Stops listening and resets the pool thresholds.
+     */
+    @Override
+    public synchronized void close() {
+        if (emitter != null) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException e) {
+                logger.debug("Memory notification listener was not registered", e);
+            }
+            emitter = null;
+        }
+        for (MemoryPoolMXBean pool : pools) {
+            if (pool.isUsageThresholdSupported()) {
+                pool.setUsageThreshold(0);
+            }
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(0);
+            }
+        }
+        pools.clear();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,147 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One stage of the capture pipeline: a bounded queue drained by its own daemon thread.
+ * Submitting blocks while the queue is full, which pushes back on the stage before it.
+ * The worker takes whatever has queued up, up to the batch size, and hands it over in
+ * one call, so stages that benefit from batching (such as persistence) get it for free.
+ * @param <T> the work item type
+ */
+public class PipelineStage<T> {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    /**
+     * Processes a batch of work items, oldest first.
+     * @param <T> the work item type
+     */
+    public interface Handler<T> {
+        void handle(List<T> batch);
+    }
+
+    private final String name;
+    private final int maxBatch;
+    private final Handler<T> handler;
+    private final BlockingQueue<Pending<T>> queue;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts a stage.
+     * @param name the stage name, also used for its thread
+     * @param capacity the maximum number of queued items before submitters block
+     * @param maxBatch the maximum number of items handed to the handler at once
+     * @param handler processes the items
+     */
+    public PipelineStage(String name, int capacity, int maxBatch, Handler<T> handler) {
+        this.name = name;
+        this.maxBatch = maxBatch;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::run, "capture-" + name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues an item, waiting while the queue is full.
+     * @param item the work item
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    public void submit(T item) throws InterruptedException {
+        queue.put(new Pending<>(item, System.nanoTime()));
+    }
+
+    /**
+     * Returns the number of items waiting in the queue.
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the time items spend in this stage, from submission until handled.
+     * @return the stage latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Stops the stage after the items already queued have been handled.
+     * @param timeoutMillis how long to wait for the queue to drain
+     * @return true if the queue drained in time
+     */
+    public boolean close(long timeoutMillis) {
+        running = false;
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            logger.warn("Capture stage {} did not drain within {} ms, {} items dropped", name, timeoutMillis,
+                queue.size());
+            worker.interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    private void run() {
+        List<Pending<T>> pending = new ArrayList<>(maxBatch);
+        List<T> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending<T> first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                pending.add(first);
+                queue.drainTo(pending, maxBatch - 1);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (Pending<T> item : pending) {
+                batch.add(item.item);
+            }
+            try {
+                handler.handle(batch);
+            } catch (RuntimeException e) {
+                logger.error("Capture stage {} failed to handle {} items", name, batch.size(), e);
+            }
+            long now = System.nanoTime();
+            for (Pending<T> item : pending) {
+                latency.record(now - item.submittedAt);
+            }
+            pending.clear();
+            batch.clear();
+        }
+    }
+
+    private static final class Pending<T> {
+        private final T item;
+        private final long submittedAt;
+
+        private Pending(T item, long submittedAt) {
+            this.item = item;
+            this.submittedAt = submittedAt;
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package com.key.clipboarduse.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Incremental, case-insensitive trigram index over clipboard history.
+ * Every indexed entry gets a document number that grows with recency, and each trigram maps
+ * to the sorted document numbers containing it. A query intersects the posting lists of its
+ * trigrams from the newest end and verifies candidates against the entry text, stopping as
+ * soon as enough matches are found. Removed entries are dropped lazily and the index is
+ * renumbered once dead documents outnumber live ones.
+ */
+public class SearchIndex {
+    private static final int MIN_DEAD_BEFORE_REBUILD = 1024;
+    private static final int MAX_CANDIDATES = 5000;
+    private static final int SEARCH_BATCH = 32;
+    private static final int INITIAL_POSTINGS = 4;
+
+    private final int maxIndexedChars;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final IntObjectMap postings = new IntObjectMap();
+    private HistoryEntry[] documents = new HistoryEntry[1024];
+    private int documentCount;
+    private int deadCount;
+    private int generation;
+
+    /**
+     * Creates an empty index.
+     * @param maxIndexedChars how many leading characters of each entry are indexed
+     */
+    public SearchIndex(int maxIndexedChars) {
+        this.maxIndexedChars = maxIndexedChars;
+    }
+
+    /**
+     * Returns how many leading characters of each entry are indexed.
+     * @return the indexed prefix length
+     */
+    public int getMaxIndexedChars() {
+        return maxIndexedChars;
+    }
+
+    /**
+     * Assigns the next document number to an entry without indexing its text yet.
+     * Used for entries restored at startup, whose text is indexed in the background.
+     * @param entry the entry
+     */
+    public void reserve(HistoryEntry entry) {
+        lock.writeLock().lock();
+        try {
+            reserveLocked(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an entry as the most recent document and indexes its text.
+     * @param entry the entry
+     * @param text the entry text
+     */
+    public void add(HistoryEntry entry, String text) {
+        int[] trigrams = trigrams(text, maxIndexedChars);
+        lock.writeLock().lock();
+        try {
+            reserveLocked(entry);
+            insertPostings(entry.searchDocument, trigrams);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the text of an entry previously passed to {@link #reserve(HistoryEntry)}.
+     * @param entry the entry
+     * @param text the entry text
+     */
+    public void index(HistoryEntry entry, String text) {
+        int[] trigrams = trigrams(text, maxIndexedChars);
+        lock.writeLock().lock();
+        try {
+            int document = entry.searchDocument;
+            if (document >= 0 && documents[document] == entry) {
+                insertPostings(document, trigrams);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an entry from the index.
+     * @param entry the entry
+     */
+    public void remove(HistoryEntry entry) {
+        lock.writeLock().lock();
+        try {
+            int document = entry.searchDocument;
+            if (document < 0 || documents[document] != entry) {
+                return;
+            }
+            documents[document] = null;
+            entry.searchDocument = -1;
+            deadCount++;
+            if (deadCount > MIN_DEAD_BEFORE_REBUILD && deadCount > documentCount - deadCount) {
+                renumber();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documentCount; i++) {
+                if (documents[i] != null) {
+                    documents[i].searchDocument = -1;
+                }
+            }
+            Arrays.fill(documents, null);
+            documentCount = 0;
+            deadCount = 0;
+            generation++;
+            postings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the most recent entries containing the query, ignoring case.
+     * Candidates are gathered in small batches under the read lock and verified outside it,
+     * so a query stops as soon as it has enough matches. Queries shorter than three characters
+     * scan the most recent entries instead of using the index, and at most a fixed number of
+     * candidates are verified.
+     * @param query the text to look for
+     * @param limit the maximum number of results
+     * @param textLoader returns the text of an entry, used to verify candidates
+     * @param scanLoader returns the text of an entry for queries too short for the index, or
+     *                   null to leave the entry out, e.g. because its text is not in memory
+     * @return matching entries, most recent first
+     */
+    public List<HistoryEntry> search(String query, int limit, Function<HistoryEntry, String> textLoader,
+                                     Function<HistoryEntry, String> scanLoader) {
+        List<HistoryEntry> results = new ArrayList<>();
+        if (query.isEmpty() || limit <= 0) {
+            return results;
+        }
+        int[] trigrams = query.length() < 3 ? null : trigrams(query, query.length());
+        Function<HistoryEntry, String> loader = trigrams == null ? scanLoader : textLoader;
+        int batchSize = Math.max(SEARCH_BATCH, limit);
+        List<HistoryEntry> candidates = new ArrayList<>(batchSize);
+        int cursor = Integer.MAX_VALUE;
+        int examined = 0;
+        int startGeneration = -1;
+        while (results.size() < limit && examined < MAX_CANDIDATES) {
+            candidates.clear();
+            lock.readLock().lock();
+            try {
+                if (startGeneration < 0) {
+                    startGeneration = generation;
+                } else if (generation != startGeneration) {
+                    break;
+                }
+                cursor = trigrams == null
+                    ? collectRecent(cursor, batchSize, candidates)
+                    : collectCandidates(trigrams, cursor, batchSize, candidates);
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (HistoryEntry candidate : candidates) {
+                String text = loader.apply(candidate);
+                if (text != null && containsIgnoreCase(text, query)) {
+                    results.add(candidate);
+                    if (results.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            examined += candidates.size();
+            if (cursor <= 0) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of live documents.
+     * @return the indexed entry count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentCount - deadCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects live documents below the cursor, newest first.
+     * @return the cursor for the next batch
+     */
+    private int collectRecent(int cursor, int batchSize, List<HistoryEntry> candidates) {
+        int document = Math.min(cursor, documentCount) - 1;
+        for (; document >= 0 && candidates.size() < batchSize; document--) {
+            if (documents[document] != null) {
+                candidates.add(documents[document]);
+            }
+        }
+        return document + 1;
+    }
+
+    /**
+     * Intersects the posting lists of the query trigrams below the cursor, newest document first.
+     * @return the cursor for the next batch
+     */
+    private int collectCandidates(int[] trigrams, int cursor, int batchSize, List<HistoryEntry> candidates) {
+        Postings[] lists = new Postings[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            lists[i] = postings.get(trigrams[i]);
+            if (lists[i] == null) {
+                return 0;
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+        Postings smallest = lists[0];
+        int position = Arrays.binarySearch(smallest.documents, 0, smallest.size, cursor);
+        int i = (position >= 0 ? position : -position - 1) - 1;
+        for (; i >= 0 && candidates.size() < batchSize; i--) {
+            int document = smallest.documents[i];
+            HistoryEntry entry = documents[document];
+            if (entry == null) {
+                continue;
+            }
+            boolean inAll = true;
+            for (int j = 1; j < lists.length && inAll; j++) {
+                inAll = Arrays.binarySearch(lists[j].documents, 0, lists[j].size, document) >= 0;
+            }
+            if (inAll) {
+                candidates.add(entry);
+            }
+        }
+        return i < 0 ? 0 : smallest.documents[i + 1];
+    }
+
+    private void reserveLocked(HistoryEntry entry) {
+        if (documentCount == documents.length) {
+            documents = Arrays.copyOf(documents, documents.length * 2);
+        }
+        entry.searchDocument = documentCount;
+        documents[documentCount++] = entry;
+    }
+
+    private void insertPostings(int document, int[] trigrams) {
+        for (int trigram : trigrams) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                list = new Postings();
+                postings.put(trigram, list);
+            }
+            list.insert(document);
+        }
+    }
+
+    /**
+     * Packs live documents to the front and rewrites every posting list with the new numbers.
+     */
+    private void renumber() {
+        int[] remap = new int[documentCount];
+        int live = 0;
+        for (int i = 0; i < documentCount; i++) {
+            HistoryEntry entry = documents[i];
+            if (entry == null) {
+                remap[i] = -1;
+            } else {
+                remap[i] = live;
+                entry.searchDocument = live;
+                documents[live++] = entry;
+            }
+        }
+        Arrays.fill(documents, live, documentCount, null);
+        documentCount = live;
+        deadCount = 0;
+        generation++;
+        postings.removeIf(list -> {
+            int kept = 0;
+            for (int i = 0; i < list.size; i++) {
+                int mapped = remap[list.documents[i]];
+                if (mapped >= 0) {
+                    list.documents[kept++] = mapped;
+                }
+            }
+            list.size = kept;
+            return kept == 0;
+        });
+    }
+
+    /**
+     * Returns the distinct trigram keys of the leading characters of a text, sorted.
+     */
+    static int[] trigrams(String text, int maxChars) {
+        int length = Math.min(text.length(), maxChars);
+        if (length < 3) {
+            return new int[0];
+        }
+        int[] keys = new int[length - 2];
+        int first = fold(text.charAt(0));
+        int second = fold(text.charAt(1));
+        for (int i = 2; i < length; i++) {
+            int third = fold(text.charAt(i));
+            keys[i - 2] = first << 20 | second << 10 | third;
+            first = second;
+            second = third;
+        }
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    /**
+     * Lower-cases a character and folds it into 10 bits. Characters below U+0200 keep their
+     * own code; others share buckets, which only adds candidates that verification rejects.
+     */
+    private static int fold(char c) {
+        int lower = Character.toLowerCase(c);
+        return lower < 0x200 ? lower : 0x200 | (lower * 0x9E37 >>> 7 & 0x1FF);
+    }
+
+    /**
+     * Case-insensitive substring test that only compares whole regions where the first character matches.
+     */
+    static boolean containsIgnoreCase(String text, String query) {
+        int length = query.length();
+        char lower = Character.toLowerCase(query.charAt(0));
+        char upper = Character.toUpperCase(query.charAt(0));
+        int last = text.length() - length;
+        for (int i = 0; i <= last; i++) {
+            char c = text.charAt(i);
+            if ((c == lower || c == upper || c >= 0x80 && Character.toLowerCase(c) == lower)
+                    && text.regionMatches(true, i + 1, query, 1, length - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sorted, growable list of document numbers.
+     */
+    private static final class Postings {
+        private int[] documents = new int[INITIAL_POSTINGS];
+        private int size;
+
+        private void insert(int document) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            if (size == 0 || documents[size - 1] < document) {
+                documents[size++] = document;
+                return;
+            }
+            int position = Arrays.binarySearch(documents, 0, size, document);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            System.arraycopy(documents, position, documents, position + 1, size - position);
+            documents[position] = document;
+            size++;
+        }
+    }
+
+    /**
+     * Open-addressing map from trigram key to posting list, avoiding boxed keys.
+     */
+    private static final class IntObjectMap {
+        private int[] keys = new int[1024];
+        private Postings[] values = new Postings[1024];
+        private int size;
+
+        private Postings get(int key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; values[slot] != null; slot = slot + 1 & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        private void put(int key, Postings value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (values[slot] != null && keys[slot] != key) {
+                slot = slot + 1 & mask;
+            }
+            if (values[slot] == null) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private void removeIf(Predicate<Postings> filter) {
+            int[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new int[oldKeys.length];
+            values = new Postings[oldValues.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null && !filter.test(oldValues[i])) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private void clear() {
+            keys = new int[1024];
+            values = new Postings[1024];
+            size = 0;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new int[capacity];
+            values = new Postings[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ h >>> 16;
+        }
+    }
+}
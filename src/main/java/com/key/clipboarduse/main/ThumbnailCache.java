@@ -0,0 +1,135 @@
+package com.key.clipboarduse.main;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downscaled previews of image history entries, decoded on first use and kept up to a byte limit.
+ * The least recently used thumbnails are dropped first, so cycling back and forth over the same
+ * images decodes each of them once while the heap held by previews stays bounded. Decoding
+ * happens outside the lock, so a slow decode never holds up lookups of other thumbnails.
+ */
+public class ThumbnailCache {
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailCache.class);
+
+    private final ClipboardManager clipboardManager;
+    private final long maxBytes;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final LinkedHashMap<Long, BufferedImage> thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long bytes;
+
+    /**
+     * Creates an empty cache.
+     * @param clipboardManager where the encoded images are read from
+     * @param maxBytes the most pixel memory the cached thumbnails may hold
+     * @param maxWidth the thumbnail width images are scaled down to fit
+     * @param maxHeight the thumbnail height images are scaled down to fit
+     */
+    public ThumbnailCache(ClipboardManager clipboardManager, long maxBytes, int maxWidth, int maxHeight) {
+        this.clipboardManager = clipboardManager;
+        this.maxBytes = maxBytes;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * Returns the thumbnail of an image entry, decoding it if it is not cached.
+     * @param entry the image entry
+     * @return the thumbnail, or null if the image cannot be read
+     */
+    public BufferedImage get(HistoryEntry entry) {
+        Long key = entry.getId();
+        synchronized (thumbnails) {
+            BufferedImage cached = thumbnails.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        byte[] png = clipboardManager.getImageData(entry);
+        if (png == null) {
+            return null;
+        }
+        BufferedImage thumbnail;
+        try {
+            thumbnail = ImageCodec.decodeThumbnail(png, maxWidth, maxHeight);
+        } catch (IOException e) {
+            logger.warn("Failed to decode history image {}", entry.getId(), e);
+            return null;
+        }
+        put(key, thumbnail);
+        return thumbnail;
+    }
+
+    private void put(Long key, BufferedImage thumbnail) {
+        long size = sizeOf(thumbnail);
+        if (size > maxBytes) {
+            return;
+        }
+        synchronized (thumbnails) {
+            BufferedImage previous = thumbnails.put(key, thumbnail);
+            bytes += size - (previous != null ? sizeOf(previous) : 0);
+            Iterator<Map.Entry<Long, BufferedImage>> eldest = thumbnails.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<Long, BufferedImage> evicted = eldest.next();
+                if (evicted.getKey().equals(key)) {
+                    continue;
+                }
+                bytes -= sizeOf(evicted.getValue());
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * Returns the pixel memory held by cached thumbnails.
+     * @return the cached bytes
+     */
+    public long getBytes() {
+        synchronized (thumbnails) {
+            return bytes;
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Describes cache usage for logging.
+     * @return a one-line summary
+     */
+    public String describeStatistics() {
+        return "thumbnails=" + getBytes() + '/' + maxBytes + " bytes, hits=" + getHitCount()
+            + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount();
+    }
+}